@@ -0,0 +1,294 @@
+package com.yoanesber.spring.task_scheduler.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.yoanesber.spring.task_scheduler.TaskSchedulerApplication;
+import com.yoanesber.spring.task_scheduler.scheduler.JobInfo;
+import com.yoanesber.spring.task_scheduler.scheduler.JobRegistry;
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+*   Soak test of the whole job set against the in-memory database of the tests, under a compressed clock.
+*   - Seeds soak.users synthetic users (SyntheticUsers), then replays soak.days days. Every simulated day moves the clock of the
+*     application one day forward, lets soak.daily-login-percent of the users log in and signs up soak.daily-signups new users,
+*     then triggers the jobs through the JobRegistry as their crons would: the daily jobs every day, the emails every 7th day
+*     and the cleanups and the purge every 30th day (the lifecycle pass and the purge when the pass is enabled).
+*   - The jobs run one after the other on the executors of their class, with the locks, journal and metrics of a production run.
+*   - Every day prints the rows affected and scanned per second, the peak connection pool and executor saturation,
+*     the statements prepared through Hibernate, the heap used and the GC activity. A summary per job is printed at the end.
+*   Any other application property can be passed as an argument, e.g. --scheduler.batch.bulk-update-enabled=false.
+*   Run with: mvn -Pbenchmark test-compile exec:exec@soak -Dsoak.args="--soak.users=1000000 --soak.days=90"
+*/
+public class SoakHarness {
+
+    private static final List<String> DAILY_JOBS = List.of("setAccountExpirationDate", "setAccountsToExpired", "setCredentialsToExpired");
+
+    private static final List<String> WEEKLY_JOBS = List.of("sendEmailToUsersWithExpiredAccounts", "sendEmailToUsersWithExpiredCredentials");
+
+    private static final List<String> MONTHLY_JOBS = List.of("cleanUpExpiredAccounts", "cleanUpExpiredCredentials", "purgeDeletedUsers");
+
+    private static final String LIFECYCLE_PASS = "lifecyclePass";
+
+    private final CompressedClock clock;
+
+    private final JobRegistry jobRegistry;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Statistics statistics;
+
+    private final HikariPoolMXBean pool;
+
+    private final Map<String, JobTotals> totals = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile Peaks peaks = new Peaks();
+
+    private SoakHarness(ConfigurableApplicationContext context, CompressedClock clock) throws Exception {
+        this.clock = clock;
+        this.jobRegistry = context.getBean(JobRegistry.class);
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+        this.meterRegistry = context.getBean(MeterRegistry.class);
+        this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        this.pool = context.getBean(DataSource.class).unwrap(HikariDataSource.class).getHikariPoolMXBean();
+    }
+
+    public static void main(String[] args) throws Exception {
+        CompressedClock clock = new CompressedClock(Instant.now());
+
+        // The clock is registered before the configuration classes are parsed, so it replaces the Clock bean of ClockConfig
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TaskSchedulerApplication.class)
+            .web(WebApplicationType.NONE)
+            .initializers(applicationContext -> applicationContext.getBeanFactory().registerSingleton("clock", clock))
+            .properties(
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "scheduler.notification.rate-per-second=1000000000",
+                "scheduler.notification.burst-capacity=1000000000",
+                "scheduler.archive.directory=" + Files.createTempDirectory("soak-archive"),
+                "scheduler.warmup.enabled=false",
+                "logging.level.root=WARN")
+            .run(args)) {
+            Environment environment = context.getEnvironment();
+            SoakHarness harness = new SoakHarness(context, clock);
+            harness.run(environment.getProperty("soak.users", Integer.class, 1_000_000), environment.getProperty("soak.days", Integer.class, 60),
+                environment.getProperty("soak.daily-login-percent", Integer.class, 2), environment.getProperty("soak.daily-signups", Integer.class, 1000));
+        }
+    }
+
+    private void run(int userCount, int days, int dailyLoginPercent, int dailySignups) {
+        long seedStart = System.nanoTime();
+        jdbcTemplate.update("delete from users");
+        SyntheticUsers.insert(jdbcTemplate, userCount, clock.instant());
+        double seedSeconds = (System.nanoTime() - seedStart) / 1e9;
+        System.out.printf("Seeded %,d users in %.1f s (%,.0f rows/s)%n%n", userCount, seedSeconds, userCount / seedSeconds);
+
+        sampler.scheduleAtFixedRate(this::sample, 0, 50, TimeUnit.MILLISECONDS);
+        System.out.printf("%4s %-10s %8s %12s %12s %12s %9s %9s %8s %11s %9s %10s%n", "day", "date", "jobs", "affected", "scanned",
+            "affected/s", "pool max", "pool wait", "exec max", "statements", "heap MB", "gc ms");
+
+        int nextUser = userCount;
+        for (int day = 1; day <= days; day++) {
+            clock.advance(Duration.ofDays(1));
+            simulateTraffic(day, dailyLoginPercent, nextUser, dailySignups);
+            nextUser += dailySignups;
+
+            runDay(day);
+        }
+
+        sampler.shutdownNow();
+        printSummary();
+    }
+
+    // Users of the day log in, and new users sign up
+    private void simulateTraffic(int day, int dailyLoginPercent, int firstUser, int signups) {
+        jdbcTemplate.update("update users set last_login = ? where mod(id + ?, 100) < ?",
+            Timestamp.from(clock.instant()), day * dailyLoginPercent, dailyLoginPercent);
+        SyntheticUsers.insert(jdbcTemplate, firstUser, signups, clock.instant());
+    }
+
+    private void runDay(int day) {
+        List<String> jobs = new ArrayList<>();
+        if (jobRegistry.getJob(LIFECYCLE_PASS).isPresent()) {
+            jobs.add(LIFECYCLE_PASS);
+        } else {
+            jobs.addAll(DAILY_JOBS);
+            if (day % 7 == 0) {
+                jobs.addAll(WEEKLY_JOBS);
+            }
+        }
+        if (day % 30 == 0) {
+            jobs.addAll(jobRegistry.getJob(LIFECYCLE_PASS).isPresent() ? List.of("purgeDeletedUsers") : MONTHLY_JOBS);
+        }
+
+        peaks = new Peaks();
+        long statements = statistics.getPrepareStatementCount();
+        long gcMillis = gcMillis();
+        double affected = 0;
+        double scanned = 0;
+        long nanos = 0;
+
+        for (String job : jobs) {
+            double jobAffected = affectedRows(job);
+            double jobScanned = rows(job, "scanned");
+            long start = System.nanoTime();
+
+            jobRegistry.trigger(job);
+            awaitCompletion(job);
+
+            long jobNanos = System.nanoTime() - start;
+            jobAffected = affectedRows(job) - jobAffected;
+            jobScanned = rows(job, "scanned") - jobScanned;
+            totals.computeIfAbsent(job, name -> new JobTotals()).add(jobNanos, jobAffected, jobScanned);
+
+            affected += jobAffected;
+            scanned += jobScanned;
+            nanos += jobNanos;
+        }
+
+        Peaks dayPeaks = peaks;
+        System.out.printf("%4d %-10s %8d %,12.0f %,12.0f %,12.0f %9d %9d %7.0f%% %,11d %,9d %,10d%n", day,
+            clock.instant().atZone(ZoneOffset.UTC).toLocalDate(), jobs.size(), affected, scanned, affected / Math.max(nanos / 1e9, 1e-3),
+            dayPeaks.activeConnections, dayPeaks.awaitingThreads, dayPeaks.executorSaturation * 100,
+            statistics.getPrepareStatementCount() - statements,
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024), gcMillis() - gcMillis);
+    }
+
+    // Wait until the triggered run of the job, and any run it queued, has completed
+    private void awaitCompletion(String job) {
+        while (true) {
+            JobInfo info = jobRegistry.getJob(job).orElseThrow();
+            if (info.runningRuns() == 0 && info.queuedRuns() == 0) {
+                return;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + job, e);
+            }
+        }
+    }
+
+    private void sample() {
+        Peaks current = peaks;
+        current.activeConnections = Math.max(current.activeConnections, pool.getActiveConnections());
+        current.awaitingThreads = Math.max(current.awaitingThreads, pool.getThreadsAwaitingConnection());
+        meterRegistry.find("scheduler.executor.saturation").gauges()
+            .forEach(gauge -> current.executorSaturation = Math.max(current.executorSaturation, gauge.value()));
+    }
+
+    // Rows updated, deleted, queued for notification or failed by the job
+    private double affectedRows(String job) {
+        return rows(job, "updated") + rows(job, "deleted") + rows(job, "queued") + rows(job, "failed");
+    }
+
+    private double rows(String job, String type) {
+        return meterRegistry.find("scheduler.job.rows").tag("job", job).tag("type", type).counters().stream()
+            .mapToDouble(Counter::count)
+            .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private void printSummary() {
+        System.out.printf("%n%-40s %6s %12s %14s %14s %14s%n", "job", "runs", "seconds", "affected", "scanned", "affected/s");
+        totals.forEach((job, total) -> System.out.printf("%-40s %6d %12.1f %,14.0f %,14.0f %,14.0f%n", job, total.runs, total.nanos / 1e9,
+            total.affected, total.scanned, total.affected / Math.max(total.nanos / 1e9, 1e-3)));
+    }
+
+    // Clock of the application, moved forward by the harness
+    private static final class CompressedClock extends Clock {
+
+        private final AtomicReference<Instant> now;
+
+        private CompressedClock(Instant start) {
+            this.now = new AtomicReference<>(start);
+        }
+
+        void advance(Duration duration) {
+            now.updateAndGet(instant -> instant.plus(duration));
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        // The jobs only use the clock in UTC, a clock in another zone is a snapshot of the current time
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return ZoneOffset.UTC.equals(zone) ? this : Clock.fixed(now.get(), zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    }
+
+    // Peak pool and executor usage sampled while the jobs of a day run
+    private static final class Peaks {
+
+        private volatile int activeConnections;
+
+        private volatile int awaitingThreads;
+
+        private volatile double executorSaturation;
+    }
+
+    private static final class JobTotals {
+
+        private int runs;
+
+        private long nanos;
+
+        private double affected;
+
+        private double scanned;
+
+        void add(long runNanos, double runAffected, double runScanned) {
+            runs++;
+            nanos += runNanos;
+            affected += runAffected;
+            scanned += runScanned;
+        }
+    }
+}
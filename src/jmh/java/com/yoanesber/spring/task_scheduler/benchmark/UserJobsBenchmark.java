@@ -0,0 +1,102 @@
+package com.yoanesber.spring.task_scheduler.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.yoanesber.spring.task_scheduler.TaskSchedulerApplication;
+import com.yoanesber.spring.task_scheduler.service.UserService;
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+/*
+*   Benchmarks of the UserService jobs against the in-memory database of the tests, seeded with synthetic users.
+*   Every job is measured with the per-row entity path (bulkUpdateEnabled=false) and the set-based bulk path (bulkUpdateEnabled=true).
+*   The users are reseeded before every iteration, so each measured run starts from the same data set.
+*   Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="-prof gc -p userCount=10000 UserJobsBenchmark"
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserJobsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int userCount;
+
+    @Param({"false", "true"})
+    public boolean bulkUpdateEnabled;
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(TaskSchedulerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "scheduler.batch.bulk-update-enabled=" + bulkUpdateEnabled,
+                "scheduler.batch.chunk-size=1000",
+                "scheduler.notification.rate-per-second=1000000000",
+                "scheduler.notification.burst-capacity=1000000000",
+                "logging.level.root=WARN")
+            .run();
+        userService = context.getBean(UserService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void seedUsers() {
+        SyntheticUsers.reseed(jdbcTemplate, userCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public int setAccountExpirationDate() {
+        return userService.setAccountExpirationDate();
+    }
+
+    @Benchmark
+    public int setAccountsToExpired() {
+        return userService.setAccountsToExpired();
+    }
+
+    @Benchmark
+    public int setCredentialsToExpired() {
+        return userService.setCredentialsToExpired();
+    }
+
+    @Benchmark
+    public int cleanUpExpiredAccounts() {
+        return userService.cleanUpExpiredAccounts();
+    }
+
+    @Benchmark
+    public int sendEmailToUsersWithExpiredAccounts() {
+        return userService.sendEmailToUsersWithExpiredAccounts();
+    }
+}
@@ -0,0 +1,151 @@
+package com.yoanesber.spring.task_scheduler.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.spring.task_scheduler.TaskSchedulerApplication;
+import com.yoanesber.spring.task_scheduler.batch.EntityBatchWriter;
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+/*
+*   Benchmarks of the user writes against the in-memory database of the tests, in rows (and so statements) per second.
+*   Every invocation writes one chunk of CHUNK_SIZE users in one transaction, the way a chunk of the ChunkProcessor does:
+*   - updates with findById and save per user (the previous entity path) or with the EntityBatchWriter (JDBC batches of UPDATEs)
+*   - inserts with saveAll (one INSERT per user with the IDENTITY id) or with UserRepository.insertAll (JDBC batches of INSERTs)
+*   jdbcBatchSize=1 turns the JDBC batching off, for a before/after comparison of the same code path.
+*   Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="UserWritesBenchmark"
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class UserWritesBenchmark {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"1", "50"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+
+    private UserRepository userRepository;
+
+    private EntityBatchWriter entityBatchWriter;
+
+    private TransactionTemplate transactionTemplate;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+
+    private int insertedUsers;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(TaskSchedulerApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "scheduler.batch.jdbc-batch-size=" + jdbcBatchSize,
+                "logging.level.root=WARN")
+            .run();
+        userRepository = context.getBean(UserRepository.class);
+        entityBatchWriter = context.getBean(EntityBatchWriter.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void seedUsers() {
+        SyntheticUsers.reseed(jdbcTemplate, CHUNK_SIZE);
+        userIds = jdbcTemplate.queryForList("select id from users order by id", Long.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public Integer updateWithSavePerUser() {
+        Instant now = Instant.now();
+        return transactionTemplate.execute(status -> {
+            userIds.forEach(userId -> {
+                User user = userRepository.findById(userId).orElseThrow();
+                user.setUpdatedDate(now);
+                userRepository.save(user);
+            });
+            return userIds.size();
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public Integer updateWithEntityBatchWriter() {
+        Instant now = Instant.now();
+        return transactionTemplate.execute(status ->
+            entityBatchWriter.update(userRepository, userIds, user -> user.setUpdatedDate(now)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public int insertWithSaveAll() {
+        return userRepository.saveAll(newUsers()).size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public int insertWithInsertAll() {
+        return userRepository.insertAll(newUsers());
+    }
+
+    // New users with unique names, the users table grows until the next iteration reseeds it
+    private List<User> newUsers() {
+        List<User> users = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            String userName = "new" + insertedUsers++;
+
+            User user = new User();
+            user.setUserName(userName);
+            user.setPassword("$2a$10$eP5Sddi7Q5Jv6seppeF93.XsWGY8r4PnsqprWGb5AxsZ9TpwULIGa");
+            user.setEmail(userName + "@youremail.com");
+            user.setFirstName("User");
+            user.setEnabled(true);
+            user.setAccountNonExpired(true);
+            user.setAccountNonLocked(true);
+            user.setCredentialsNonExpired(true);
+            user.setUserType("USER_ACCOUNT");
+            user.setCreatedBy("system");
+            user.setUpdatedBy("system");
+            users.add(user);
+        }
+
+        return users;
+    }
+}
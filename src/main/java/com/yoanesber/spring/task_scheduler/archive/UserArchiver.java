@@ -0,0 +1,272 @@
+package com.yoanesber.spring.task_scheduler.archive;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.batch.ChunkProcessor;
+import com.yoanesber.spring.task_scheduler.batch.JobGuard;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+
+/*
+*   Archive-then-purge of the soft-deleted users:
+*   1. Export : the users soft-deleted before the cutoff are written to a gzip-compressed CSV file in scheduler.archive.directory,
+*               one id range of scheduler.batch.chunk-size ids at a time. On PostgreSQL every range is streamed with COPY ... TO STDOUT,
+*               other databases fall back to a JDBC query. The password hashes are not archived.
+*               A failed export, or a job stopped between two ranges (lost lock, shutdown), deletes its partial file, no user has been deleted yet.
+*   2. Verify : the file is read back to the end, which checks the gzip CRC and length, and its records are counted.
+*   3. Purge  : the ids are read from the verified file and the users are hard-deleted in batches of chunk-size ids,
+*               one transaction per batch. A batch only deletes the users that are still soft-deleted before the cutoff.
+*/
+@Component
+public class UserArchiver {
+
+    static final String COLUMNS = "id, username, email, firstname, lastname, is_enabled, is_account_non_expired, is_account_non_locked, "
+        + "is_credentials_non_expired, is_deleted, account_expiration_date, credentials_expiration_date, last_login, user_type, "
+        + "created_by, created_date, updated_by, updated_date";
+
+    private static final String DELETED_BEFORE_CUTOFF = "is_deleted = true and updated_date <= ";
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final UserRepository userRepository;
+
+    private final ChunkProcessor chunkProcessor;
+
+    private final JobGuard jobGuard;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.archive.directory:archive}")
+    private String directory;
+
+    // If true, the users are exported with COPY when the database is PostgreSQL
+    @Value("${scheduler.archive.copy-enabled:true}")
+    private boolean copyEnabled;
+
+    @Value("${scheduler.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    public UserArchiver(JdbcTemplate jdbcTemplate, UserRepository userRepository, ChunkProcessor chunkProcessor, JobGuard jobGuard,
+        Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.chunkProcessor = chunkProcessor;
+        this.jobGuard = jobGuard;
+        this.clock = clock;
+    }
+
+    // Archive the users soft-deleted before the cutoff, then hard-delete them, returns the number of users deleted
+    public int archiveAndPurge(String jobName, Instant cutoff) throws IOException {
+        List<Long> idRange = jdbcTemplate.query(
+            "select min(id), max(id) from users where " + DELETED_BEFORE_CUTOFF + "?",
+            (rs, rowNum) -> List.of(rs.getLong(1), rs.getLong(2)), cutoff.atOffset(ZoneOffset.UTC)).get(0);
+        if (idRange.get(1) == 0) {
+            return 0;
+        }
+
+        Path archive = export(jobName, cutoff, idRange.get(0), idRange.get(1));
+
+        return purge(jobName, archive, cutoff);
+    }
+
+    // Write the users to a new archive file, the file only gets its final name once it is complete
+    private Path export(String jobName, Instant cutoff, long minId, long maxId) throws IOException {
+        Path archiveDirectory = Paths.get(directory);
+        Files.createDirectories(archiveDirectory);
+        Path archive = archiveDirectory.resolve("users-" + FILE_TIMESTAMP.format(clock.instant()) + ".csv.gz");
+        Path partial = archiveDirectory.resolve(archive.getFileName() + ".part");
+
+        long exportedUsers = 0;
+        boolean copy = copyEnabled && Boolean.TRUE.equals(
+            jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class)));
+
+        boolean published = false;
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                out.write((COLUMNS.replace(" ", "") + "\n").getBytes(StandardCharsets.UTF_8));
+
+                for (long fromId = minId - 1; fromId < maxId; fromId += chunkSize) {
+                    jobGuard.checkpoint(jobName);
+                    long toId = Math.min(fromId + chunkSize, maxId);
+                    exportedUsers += copy ? copyOut(out, cutoff, fromId, toId) : queryOut(out, cutoff, fromId, toId);
+                }
+            }
+
+            // Read the file back before it is published and before any user is deleted
+            long archivedUsers = forEachArchivedId(partial, id -> { });
+            if (archivedUsers != exportedUsers) {
+                throw new IllegalStateException("Archive " + partial + " holds " + archivedUsers + " users instead of " + exportedUsers);
+            }
+
+            Files.move(partial, archive, StandardCopyOption.ATOMIC_MOVE);
+            published = true;
+            logger.info("{} archived {} users to {}", jobName, archivedUsers, archive);
+        } finally {
+            // A failed or stopped export leaves no partial file behind, the next run exports the users again
+            if (!published) {
+                deletePartial(partial);
+            }
+        }
+
+        return archive;
+    }
+
+    private void deletePartial(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            logger.error("Exception while deleting the partial archive {} with message: {}", partial, e.getMessage());
+        }
+    }
+
+    // Stream an id range with COPY, the timestamps and ids are formatted by the application, so the statement holds no user input
+    private long copyOut(OutputStream out, Instant cutoff, long fromId, long toId) {
+        String sql = "COPY (select " + COLUMNS + " from users where " + DELETED_BEFORE_CUTOFF + "'" + cutoff + "'::timestamptz"
+            + " and id > " + fromId + " and id <= " + toId + " order by id) TO STDOUT WITH (FORMAT csv)";
+
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new SQLException("COPY of the users in (" + fromId + ", " + toId + "] failed", e);
+            }
+        });
+
+        return rows == null ? 0 : rows;
+    }
+
+    // Write an id range with a JDBC query, in the CSV format of COPY (NULL is an empty field, an empty string is quoted)
+    private long queryOut(OutputStream out, Instant cutoff, long fromId, long toId) {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        long[] rows = new long[1];
+
+        jdbcTemplate.query("select " + COLUMNS + " from users where " + DELETED_BEFORE_CUTOFF + "? and id > ? and id <= ? order by id",
+            (ResultSet rs) -> {
+                try {
+                    writeRecord(writer, rs);
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new SQLException("Export of the users in (" + fromId + ", " + toId + "] failed", e);
+                }
+            }, cutoff.atOffset(ZoneOffset.UTC), fromId, toId);
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Export of the users in (" + fromId + ", " + toId + "] failed", e);
+        }
+        return rows[0];
+    }
+
+    private static void writeRecord(Writer writer, ResultSet rs) throws SQLException, IOException {
+        int columns = rs.getMetaData().getColumnCount();
+        for (int column = 1; column <= columns; column++) {
+            if (column > 1) {
+                writer.write(',');
+            }
+
+            String value = rs.getString(column);
+            if (value == null) {
+                continue;
+            }
+            if (value.isEmpty() || value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    // Hard-delete the users of the archive, one batch of chunkSize ids per transaction
+    private int purge(String jobName, Path archive, Instant cutoff) throws IOException {
+        List<Long> batch = new ArrayList<>(chunkSize);
+        int[] deletedUsers = new int[1];
+
+        forEachArchivedId(archive, id -> {
+            batch.add(id);
+            if (batch.size() == chunkSize) {
+                deletedUsers[0] += deleteBatch(jobName, batch, cutoff);
+            }
+        });
+        if (!batch.isEmpty()) {
+            deletedUsers[0] += deleteBatch(jobName, batch, cutoff);
+        }
+
+        return deletedUsers[0];
+    }
+
+    private int deleteBatch(String jobName, List<Long> batch, Instant cutoff) {
+        List<Long> userIds = List.copyOf(batch);
+        batch.clear();
+
+        return chunkProcessor.writeChunk(jobName, () -> userRepository.deleteArchivedUsers(cutoff, userIds));
+    }
+
+    // Read the archive to the end and hand the id of every record to the consumer, returns the number of records.
+    // Quoted fields may hold commas, quotes and line breaks, so the records are split with the CSV quoting rules instead of by line.
+    static long forEachArchivedId(Path archive, LongConsumer idConsumer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024), StandardCharsets.UTF_8))) {
+            long records = -1;
+            StringBuilder id = new StringBuilder();
+            boolean firstField = true;
+            boolean quoted = false;
+            int c;
+
+            while ((c = reader.read()) != -1) {
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ',' && !quoted) {
+                    firstField = false;
+                } else if (c == '\n' && !quoted) {
+                    // The first record is the header
+                    if (records >= 0) {
+                        idConsumer.accept(Long.parseLong(id.toString()));
+                    }
+                    records++;
+                    id.setLength(0);
+                    firstField = true;
+                } else if (firstField && c != '\r') {
+                    id.append((char) c);
+                }
+            }
+
+            return Math.max(records, 0);
+        }
+    }
+}
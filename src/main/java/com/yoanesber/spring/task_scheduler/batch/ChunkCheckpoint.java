@@ -0,0 +1,32 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+// Progress of a resumable run, kept per partition. The ChunkProcessor skips the chunks that a previous attempt of the run has committed
+// and records every chunk in the transaction of that chunk, so the recorded progress never runs ahead of the committed work.
+public interface ChunkCheckpoint {
+
+    // Checkpoint of a run that is not resumable
+    ChunkCheckpoint NONE = new ChunkCheckpoint() {
+
+        @Override
+        public long resumeAfter(int partition) {
+            return 0;
+        }
+
+        @Override
+        public void chunkCompleted(int partition, long lastId, int affectedRows) {
+        }
+
+        @Override
+        public void partitionCompleted(int partition) {
+        }
+    };
+
+    // Last id committed by the partition in a previous attempt, 0 if it has not started and Long.MAX_VALUE if it has completed
+    long resumeAfter(int partition);
+
+    // Called in the transaction of every chunk of the partition, after its update
+    void chunkCompleted(int partition, long lastId, int affectedRows);
+
+    // Called once the partition has updated all its chunks
+    void partitionCompleted(int partition);
+}
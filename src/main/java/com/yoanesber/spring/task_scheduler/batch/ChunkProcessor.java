@@ -0,0 +1,351 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.spring.task_scheduler.metrics.JobMetrics;
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+import com.yoanesber.spring.task_scheduler.service.JobLockService;
+
+@Component
+public class ChunkProcessor {
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final ThreadPoolTaskExecutor partitionTaskExecutor;
+
+    private final JobMetrics jobMetrics;
+
+    private final JobLockService jobLockService;
+
+    private final JobGuard jobGuard;
+
+    private final ChunkThrottle chunkThrottle;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // Width of the id range that is updated (and locked) in a single transaction
+    @Value("${scheduler.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    // Transaction boundary of a partition: CHUNK commits every chunk on its own,
+    // PARTITION commits all chunks of a partition in a single transaction
+    @Value("${scheduler.batch.partition-transaction:CHUNK}")
+    private PartitionTransaction partitionTransaction;
+
+    public enum PartitionTransaction {
+        CHUNK,
+        PARTITION
+    }
+
+    // Set-based update that is applied to the users whose id is in (fromId, toId]
+    @FunctionalInterface
+    public interface IdRangeUpdate {
+        int apply(long fromId, long toId);
+    }
+
+    // Keyset-paginated query returning at most limit user ids greater than lastId, in id order
+    @FunctionalInterface
+    public interface KeysetPageQuery {
+        List<Long> nextPage(long lastId, int limit);
+    }
+
+    // Keyset-paginated query returning a page of items whose id is greater than lastId
+    @FunctionalInterface
+    public interface KeysetPageReader<T> {
+        List<T> nextPage(long lastId, int limit);
+    }
+
+    public ChunkProcessor(TransactionTemplate transactionTemplate,
+        @Qualifier("partitionTaskExecutor") ThreadPoolTaskExecutor partitionTaskExecutor, JobMetrics jobMetrics,
+        JobLockService jobLockService, JobGuard jobGuard, ChunkThrottle chunkThrottle) {
+        this.transactionTemplate = transactionTemplate;
+        this.readOnlyTransactionTemplate = readOnlyTransactionTemplate(transactionTemplate.getTransactionManager());
+        this.partitionTaskExecutor = partitionTaskExecutor;
+        this.jobMetrics = jobMetrics;
+        this.jobLockService = jobLockService;
+        this.jobGuard = jobGuard;
+        this.chunkThrottle = chunkThrottle;
+    }
+
+    // Apply the update to the id space [minId, maxId]. The id space is cut into chunks aligned to multiples of chunkSize
+    // (chunk k covers the ids (k * chunkSize, (k + 1) * chunkSize]) and the chunks are dealt round-robin to one partition
+    // per thread of the partition executor: partition p updates the chunks k with k % partitionCount == p.
+    // The partitions run in parallel and are joined before returning the total number of affected rows.
+    // The partitions do not depend on minId and maxId, so every node computes the same partitions. With partition sharding enabled,
+    // each node only updates the partitions it could lock and the partitions of a job are shared between the nodes.
+    public int updateInIdRanges(String jobName, long minId, long maxId, IdRangeUpdate update) {
+        return updateInIdRanges(jobName, minId, maxId, update, ChunkCheckpoint.NONE);
+    }
+
+    // Same as above for a resumable run: the chunks committed by a previous attempt of the run are skipped and every committed chunk
+    // is recorded in the checkpoint. A resumable run always uses getPartitionCount() partitions, so every attempt splits the id space
+    // the same way.
+    public int updateInIdRanges(String jobName, long minId, long maxId, IdRangeUpdate update, ChunkCheckpoint checkpoint) {
+        boolean sharded = jobLockService.isPartitionShardingEnabled();
+        // The partitions run on other threads, they check the lease of the run that started them
+        String runId = jobGuard.currentRunId();
+        boolean fixedPartitions = sharded || checkpoint != ChunkCheckpoint.NONE;
+
+        if (maxId < minId) {
+            for (int partition = 0; fixedPartitions && partition < getPartitionCount(); partition++) {
+                checkpoint.partitionCompleted(partition);
+            }
+            return 0;
+        }
+
+        long firstChunk = Math.floorDiv(minId - 1, chunkSize);
+        long lastChunk = Math.floorDiv(maxId - 1, chunkSize);
+
+        int partitionCount = getPartitionCount();
+        if (!fixedPartitions) {
+            partitionCount = (int) Math.min(partitionCount, lastChunk - firstChunk + 1);
+        }
+
+        if (partitionCount <= 1 && !sharded) {
+            return updatePartition(jobName, runId, 0, 1, firstChunk, lastChunk, update, JobLease.UNLOCKED, checkpoint);
+        }
+
+        List<CompletableFuture<Integer>> partitions = new ArrayList<>();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            final int partitionIndex = partition;
+            final int partitionTotal = partitionCount;
+            partitions.add(CompletableFuture.supplyAsync(() -> sharded
+                ? updateLockedPartition(jobName, runId, partitionIndex, partitionTotal, firstChunk, lastChunk, update, checkpoint)
+                : updatePartition(jobName, runId, partitionIndex, partitionTotal, firstChunk, lastChunk, update, JobLease.UNLOCKED, checkpoint),
+                partitionTaskExecutor));
+        }
+
+        try {
+            CompletableFuture.allOf(partitions.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        int affectedRows = partitions.stream().mapToInt(CompletableFuture::join).sum();
+        logger.debug("{} updated {} rows in {} partitions", jobName, affectedRows, partitions.size());
+
+        return affectedRows;
+    }
+
+    // Number of partitions of a bulk update, one per thread of the partition executor
+    public int getPartitionCount() {
+        return partitionTaskExecutor.getCorePoolSize();
+    }
+
+    // Update a partition only if its lock can be acquired, a partition locked by another node is skipped
+    private int updateLockedPartition(String jobName, String runId, int partition, int partitionCount, long firstChunk, long lastChunk,
+        IdRangeUpdate update, ChunkCheckpoint checkpoint) {
+        Optional<JobLease> lease = jobLockService.tryAcquire(jobName + "#partition-" + partition);
+        if (lease.isEmpty()) {
+            logger.debug("{} skipped partition {}, it is locked by another node", jobName, partition);
+            return 0;
+        }
+
+        try (JobLease partitionLease = lease.get()) {
+            return updatePartition(jobName, runId, partition, partitionCount, firstChunk, lastChunk, update, partitionLease, checkpoint);
+        }
+    }
+
+    // Update the chunks of a single partition
+    private int updatePartition(String jobName, String runId, int partition, int partitionCount, long firstChunk, long lastChunk,
+        IdRangeUpdate update, JobLease lease, ChunkCheckpoint checkpoint) {
+        if (partitionTransaction == PartitionTransaction.PARTITION) {
+            // The chunk transactions join the partition transaction
+            Integer affectedRows = transactionTemplate.execute(
+                status -> updateInChunks(jobName, runId, partition, partitionCount, firstChunk, lastChunk, update, lease, checkpoint));
+            return affectedRows == null ? 0 : affectedRows;
+        }
+
+        return updateInChunks(jobName, runId, partition, partitionCount, firstChunk, lastChunk, update, lease, checkpoint);
+    }
+
+    // Update the chunks k of the partition (k % partitionCount == partition) between firstChunk and lastChunk, one transaction per chunk
+    // The chunks committed by a previous attempt of a resumable run are skipped
+    private int updateInChunks(String jobName, String runId, int partition, int partitionCount, long firstChunk, long lastChunk,
+        IdRangeUpdate update, JobLease lease, ChunkCheckpoint checkpoint) {
+        int affectedRows = 0;
+        long resumeAfter = checkpoint.resumeAfter(partition);
+
+        for (long chunk = firstChunk + Math.floorMod(partition - firstChunk, partitionCount); chunk <= lastChunk; chunk += partitionCount) {
+            final long chunkFromId = chunk * chunkSize;
+            final long chunkToId = chunkFromId + chunkSize;
+            if (chunkToId <= resumeAfter) {
+                continue;
+            }
+
+            checkpoint(jobName, runId, lease);
+
+            long chunkStart = System.nanoTime();
+            Integer chunkAffectedRows = transactionTemplate.execute(status -> {
+                int rows = update.apply(chunkFromId, chunkToId);
+                checkpoint.chunkCompleted(partition, chunkToId, rows);
+                return rows;
+            });
+            affectedRows += chunkAffectedRows == null ? 0 : chunkAffectedRows;
+
+            logger.debug("{} updated {} rows in id range ({}, {}]", jobName, chunkAffectedRows, chunkFromId, chunkToId);
+
+            // The chunks of a PARTITION transaction are not paced, a pause would hold the locks of the partition
+            if (partitionTransaction == PartitionTransaction.CHUNK) {
+                chunkThrottle.chunkCompleted(jobName, System.nanoTime() - chunkStart, chunkAffectedRows == null ? 0 : chunkAffectedRows, false);
+            }
+        }
+
+        if (resumeAfter != Long.MAX_VALUE) {
+            checkpoint.partitionCompleted(partition);
+        }
+
+        return affectedRows;
+    }
+
+    // Walk the user ids returned by the keyset-paginated query chunkSize ids at a time. Each chunk is read and handled
+    // in its own transaction, so neither the id list nor the persistence context grows with the size of the table.
+    // Returns the total number of ids handled.
+    public int processInKeysetChunks(String jobName, KeysetPageQuery pageQuery, Consumer<List<Long>> chunkHandler) {
+        return processInKeysetChunks(jobName, pageQuery, chunkHandler, ChunkCheckpoint.NONE);
+    }
+
+    // Same as above for a resumable run, which is a single partition: the walk starts after the last id committed by a previous attempt
+    // and every committed chunk is recorded in the checkpoint
+    public int processInKeysetChunks(String jobName, KeysetPageQuery pageQuery, Consumer<List<Long>> chunkHandler,
+        ChunkCheckpoint checkpoint) {
+        if (!jobLockService.isPartitionShardingEnabled()) {
+            return processInKeysetChunks(jobName, pageQuery, chunkHandler, JobLease.UNLOCKED, checkpoint);
+        }
+
+        // The keyset path is not partitioned, so with partition sharding the whole job is locked here
+        Optional<JobLease> lease = jobLockService.tryAcquire(jobName);
+        if (lease.isEmpty()) {
+            logger.debug("{} skipped, it is locked by another node", jobName);
+            return 0;
+        }
+
+        try (JobLease jobLease = lease.get()) {
+            return processInKeysetChunks(jobName, pageQuery, chunkHandler, jobLease, checkpoint);
+        }
+    }
+
+    private int processInKeysetChunks(String jobName, KeysetPageQuery pageQuery, Consumer<List<Long>> chunkHandler,
+        JobLease lease, ChunkCheckpoint checkpoint) {
+        int processedIds = 0;
+        long lastId = checkpoint.resumeAfter(0);
+        if (lastId == Long.MAX_VALUE) {
+            return 0;
+        }
+
+        while (true) {
+            checkpoint(jobName, jobGuard.currentRunId(), lease);
+            final long afterId = lastId;
+            final int limit = chunkThrottle.chunkSize(jobName);
+
+            long chunkStart = System.nanoTime();
+            List<Long> userIds = transactionTemplate.execute(status -> {
+                List<Long> chunkUserIds = pageQuery.nextPage(afterId, limit);
+                jobMetrics.recordRows(jobName, JobMetrics.ROWS_SCANNED, chunkUserIds.size());
+
+                if (!chunkUserIds.isEmpty()) {
+                    try {
+                        chunkHandler.accept(chunkUserIds);
+                    } catch (RuntimeException e) {
+                        jobMetrics.recordRows(jobName, JobMetrics.ROWS_FAILED, chunkUserIds.size());
+                        throw e;
+                    }
+                    checkpoint.chunkCompleted(0, chunkUserIds.get(chunkUserIds.size() - 1), chunkUserIds.size());
+                }
+                return chunkUserIds;
+            });
+
+            if (userIds == null || userIds.isEmpty()) {
+                checkpoint.partitionCompleted(0);
+                return processedIds;
+            }
+
+            processedIds += userIds.size();
+            lastId = userIds.get(userIds.size() - 1);
+
+            logger.debug("{} processed {} users up to id {}", jobName, userIds.size(), lastId);
+
+            if (userIds.size() < limit) {
+                checkpoint.partitionCompleted(0);
+                return processedIds;
+            }
+            chunkThrottle.chunkCompleted(jobName, System.nanoTime() - chunkStart, userIds.size(), true);
+        }
+    }
+
+    // Read the items returned by the keyset-paginated reader chunkSize items at a time, each page in a short read-only transaction,
+    // and hand every page to the consumer after that transaction has completed, so a slow consumer never holds a transaction open.
+    // Returns the total number of items read.
+    public <T> int readInKeysetChunks(String jobName, KeysetPageReader<T> pageReader, ToLongFunction<T> idOf,
+        Consumer<List<T>> chunkConsumer) {
+        int readItems = 0;
+        long lastId = 0;
+
+        while (true) {
+            checkpoint(jobName, jobGuard.currentRunId(), JobLease.UNLOCKED);
+            final long afterId = lastId;
+            final int limit = chunkThrottle.chunkSize(jobName);
+
+            long chunkStart = System.nanoTime();
+            List<T> items = readOnlyTransactionTemplate.execute(status -> pageReader.nextPage(afterId, limit));
+            long chunkElapsedNanos = System.nanoTime() - chunkStart;
+            if (items == null || items.isEmpty()) {
+                return readItems;
+            }
+
+            readItems += items.size();
+            lastId = items.stream().mapToLong(idOf).max().getAsLong();
+
+            jobMetrics.recordRows(jobName, JobMetrics.ROWS_SCANNED, items.size());
+            logger.debug("{} read {} items up to id {}", jobName, items.size(), lastId);
+
+            chunkConsumer.accept(items);
+            chunkThrottle.chunkCompleted(jobName, chunkElapsedNanos, items.size(), true);
+        }
+    }
+
+    // Run the writes of a chunk read by readInKeysetChunks in their own transaction, returns the number of affected rows
+    public int writeChunk(String jobName, IntSupplier writes) {
+        checkpoint(jobName, jobGuard.currentRunId(), JobLease.UNLOCKED);
+
+        Integer affectedRows = transactionTemplate.execute(status -> writes.getAsInt());
+        return affectedRows == null ? 0 : affectedRows;
+    }
+
+    // Stop the job before the next chunk if it has to stop, if the lease of its run has been lost
+    // or if the lease it is running under (e.g. the lock of its partition) has been lost
+    private void checkpoint(String jobName, String runId, JobLease lease) {
+        jobGuard.checkpoint(jobName, runId);
+        if (!lease.isHeld()) {
+            throw new JobStoppedException(jobName, "lock " + lease.getName() + " has been lost");
+        }
+    }
+
+    private static TransactionTemplate readOnlyTransactionTemplate(PlatformTransactionManager transactionManager) {
+        TransactionTemplate readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+
+        return readOnlyTransactionTemplate;
+    }
+}
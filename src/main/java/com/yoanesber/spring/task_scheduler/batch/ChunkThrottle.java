@@ -0,0 +1,159 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+*   Adaptive pacing of the chunks of a job, so the maintenance jobs yield to the production load of the database.
+*   - After every chunk, the time the chunk took and the number of threads waiting for a connection of the Hikari pool are compared
+*     with latencyBudgetMillis. A chunk over the budget, or any thread waiting for a connection, means the database is busy.
+*   - Busy: the chunk size of the job is halved (down to minChunkSize) and the pause between two chunks is doubled (up to maxPauseMillis).
+*     Otherwise the chunk size grows by a tenth of the configured chunk size (up to maxChunkSize) and the pause is halved.
+*   - Only the keyset paths resize their chunks. The id-range chunks stay aligned to the configured chunk size, which the partitions,
+*     the partition locks of the other nodes and the checkpoints depend on, so only their pause adapts.
+*   - The chunk size, the pause and the throughput (rows per second, including the pauses) of every job are exposed as
+*     scheduler.throttle.chunk.size, scheduler.throttle.pause and scheduler.throttle.throughput, tagged with the job name.
+*/
+@Component
+public class ChunkThrottle {
+
+    private static final long MIN_PAUSE_MILLIS = 10;
+
+    private final HikariPoolMXBean pool;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, JobPace> paces = new ConcurrentHashMap<>();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.throttle.enabled:false}")
+    private boolean enabled;
+
+    @Value("${scheduler.throttle.latency-budget-millis:250}")
+    private long latencyBudgetMillis;
+
+    @Value("${scheduler.throttle.min-chunk-size:50}")
+    private int minChunkSize;
+
+    @Value("${scheduler.throttle.max-chunk-size:10000}")
+    private int maxChunkSize;
+
+    @Value("${scheduler.throttle.max-pause-millis:2000}")
+    private long maxPauseMillis;
+
+    @Value("${scheduler.batch.chunk-size:1000}")
+    private int chunkSize;
+
+    public ChunkThrottle(DataSource dataSource, MeterRegistry meterRegistry) throws SQLException {
+        this.pool = dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean() : null;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Number of users the next keyset chunk of the job reads
+    public int chunkSize(String jobName) {
+        return enabled ? pace(jobName).chunkSize : chunkSize;
+    }
+
+    // Adapt the pace of the job to a chunk of rows that took elapsedNanos, then wait the pause of the job before its next chunk.
+    // The chunk size only adapts if the chunks of the job are resizable (keyset paths).
+    // Must be called outside of the chunk transaction, so the pause never holds locks.
+    public void chunkCompleted(String jobName, long elapsedNanos, int rows, boolean resizable) {
+        if (!enabled) {
+            return;
+        }
+
+        long pauseMillis = pace(jobName).adapt(elapsedNanos, rows, isBusy(elapsedNanos), resizable);
+        if (pauseMillis > 0) {
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                // The job is being stopped, its next checkpoint decides whether it goes on
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean isBusy(long elapsedNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos) > latencyBudgetMillis
+            || (pool != null && pool.getThreadsAwaitingConnection() > 0);
+    }
+
+    private JobPace pace(String jobName) {
+        return paces.computeIfAbsent(jobName, name -> {
+            JobPace pace = new JobPace(name, Math.max(minChunkSize, Math.min(maxChunkSize, chunkSize)));
+            Gauge.builder("scheduler.throttle.chunk.size", pace, p -> p.chunkSize)
+                .description("Number of users read by the next keyset chunk of a job")
+                .tag("job", name)
+                .register(meterRegistry);
+            Gauge.builder("scheduler.throttle.pause", pace, p -> p.pauseMillis)
+                .description("Pause between two chunks of a job")
+                .baseUnit("milliseconds")
+                .tag("job", name)
+                .register(meterRegistry);
+            Gauge.builder("scheduler.throttle.throughput", pace, p -> p.throughput)
+                .description("Rows per second written or read by a job, including the pauses between its chunks")
+                .tag("job", name)
+                .register(meterRegistry);
+            return pace;
+        });
+    }
+
+    // Pace of a job, shared by its partitions
+    private final class JobPace {
+
+        private final String jobName;
+
+        private volatile int chunkSize;
+
+        private volatile long pauseMillis;
+
+        private volatile double throughput;
+
+        private JobPace(String jobName, int chunkSize) {
+            this.jobName = jobName;
+            this.chunkSize = chunkSize;
+        }
+
+        // Additive increase and multiplicative decrease of the chunk size, the other way round for the pause, returns the pause to wait
+        private synchronized long adapt(long elapsedNanos, int rows, boolean busy, boolean resizable) {
+            long previousPauseMillis = pauseMillis;
+            if (busy) {
+                chunkSize = resizable ? Math.max(minChunkSize, chunkSize / 2) : chunkSize;
+                pauseMillis = Math.min(maxPauseMillis, Math.max(MIN_PAUSE_MILLIS, pauseMillis * 2));
+            } else {
+                chunkSize = resizable ? Math.min(maxChunkSize, chunkSize + Math.max(1, ChunkThrottle.this.chunkSize / 10)) : chunkSize;
+                pauseMillis = pauseMillis / 2 < MIN_PAUSE_MILLIS ? 0 : pauseMillis / 2;
+            }
+
+            // Exponentially weighted average of the rows per second of the last chunks
+            double seconds = (elapsedNanos + TimeUnit.MILLISECONDS.toNanos(pauseMillis)) / 1e9;
+            double chunkThroughput = seconds > 0 ? rows / seconds : 0;
+            throughput = throughput == 0 ? chunkThroughput : 0.7 * throughput + 0.3 * chunkThroughput;
+
+            if (busy && pauseMillis != previousPauseMillis) {
+                logger.debug("{} backs off to chunks of {} users and a pause of {} ms", jobName, chunkSize, pauseMillis);
+            }
+            return pauseMillis;
+        }
+    }
+}
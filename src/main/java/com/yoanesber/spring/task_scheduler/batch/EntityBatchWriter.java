@@ -0,0 +1,43 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/*
+*   Entity write path of the jobs that still update rows through JPA (e.g. the jobs with bulkUpdateEnabled=false).
+*   The entities are loaded jdbcBatchSize ids at a time with one select, updated in memory and flushed together, so Hibernate
+*   sends their UPDATEs as one JDBC batch (see JpaBatchConfig). The persistence context is cleared after every flush,
+*   which keeps it from growing with the size of the chunk.
+*   Must be called in a transaction, e.g. in a chunk of the ChunkProcessor.
+*/
+@Component
+public class EntityBatchWriter {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${scheduler.batch.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    // Apply the update to the entities of the ids, returns the number of entities found and updated
+    public <T, ID> int update(JpaRepository<T, ID> repository, List<ID> ids, Consumer<T> update) {
+        int updatedEntities = 0;
+        for (int from = 0; from < ids.size(); from += jdbcBatchSize) {
+            List<T> entities = repository.findAllById(ids.subList(from, Math.min(from + jdbcBatchSize, ids.size())));
+            entities.forEach(update);
+            updatedEntities += entities.size();
+
+            entityManager.flush();
+            entityManager.clear();
+        }
+
+        return updatedEntities;
+    }
+}
@@ -0,0 +1,47 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+@Component
+public class FanOutExecutor {
+
+    private final TaskExecutor ioTaskExecutor;
+
+    // Caps the number of I/O actions (database connections, email sends) running at the same time
+    private final Semaphore permits;
+
+    public FanOutExecutor(@Qualifier("ioTaskExecutor") TaskExecutor ioTaskExecutor,
+        @Value("${scheduler.virtual-threads.max-concurrency:10}") int maxConcurrency) {
+        this.ioTaskExecutor = ioTaskExecutor;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    // Run the action on the I/O executor without waiting for it to complete.
+    // The caller blocks while all permits are taken, so at most maxConcurrency actions run at the same time.
+    public void execute(Runnable action) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a fan-out permit", e);
+        }
+
+        try {
+            ioTaskExecutor.execute(() -> {
+                try {
+                    action.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+}
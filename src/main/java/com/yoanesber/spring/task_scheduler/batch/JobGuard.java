@@ -0,0 +1,61 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+
+// Keeps the lease of every running job run, so the ChunkProcessor can stop a run between two chunks once its lease has been lost
+// or once the application drains for a shutdown. The leases are keyed by run id, so parallel runs of the same job
+// (ConcurrencyPolicy.ALLOW_PARALLEL) each keep their own lease.
+@Component
+public class JobGuard {
+
+    private final Map<String, JobLease> runningJobs = new ConcurrentHashMap<>();
+
+    // Run registered on the thread the run executes on, the threads it hands work to get its run id passed along
+    private final ThreadLocal<String> currentRunId = new ThreadLocal<>();
+
+    private volatile String stopReason;
+
+    // Register the lease of a run, on the thread the run executes on
+    public void register(String runId, JobLease lease) {
+        runningJobs.put(runId, lease);
+        currentRunId.set(runId);
+    }
+
+    public void unregister(String runId) {
+        runningJobs.remove(runId);
+        currentRunId.remove();
+    }
+
+    // Run id registered on the current thread, null if no run is registered on it (e.g. a job called directly)
+    public String currentRunId() {
+        return currentRunId.get();
+    }
+
+    // Stop every job, running or started later, at its next checkpoint
+    public void stopAll(String reason) {
+        stopReason = reason;
+    }
+
+    // Called before every chunk on the thread of the run, throws a JobStoppedException if the job must not continue
+    public void checkpoint(String jobName) {
+        checkpoint(jobName, currentRunId());
+    }
+
+    // Same as above from a thread the run handed work to, with the run id of that run
+    public void checkpoint(String jobName, String runId) {
+        String reason = stopReason;
+        if (reason != null) {
+            throw new JobStoppedException(jobName, reason);
+        }
+
+        JobLease lease = runId == null ? null : runningJobs.get(runId);
+        if (lease != null && !lease.isHeld()) {
+            throw new JobStoppedException(jobName, "lock " + lease.getName() + " has been lost");
+        }
+    }
+}
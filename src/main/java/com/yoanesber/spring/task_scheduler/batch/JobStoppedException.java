@@ -0,0 +1,9 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+// Thrown between two chunks when a job has to stop before it is complete, the chunks committed so far are kept
+public class JobStoppedException extends RuntimeException {
+
+    public JobStoppedException(String jobName, String reason) {
+        super("Job " + jobName + " stopped: " + reason);
+    }
+}
@@ -0,0 +1,20 @@
+package com.yoanesber.spring.task_scheduler.config;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ClockConfig {
+
+    // Clock the jobs compute their cutoff timestamps from, replaced by any other Clock bean (e.g. a fixed clock in tests)
+    // It ticks in microseconds like the timestamp columns, so a timestamp written by a job is not rounded past the same now when compared
+    @Bean
+    @ConditionalOnMissingBean(Clock.class)
+    public Clock clock() {
+        return Clock.tick(Clock.systemUTC(), Duration.ofNanos(1000));
+    }
+}
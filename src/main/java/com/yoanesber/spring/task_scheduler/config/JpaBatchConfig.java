@@ -0,0 +1,26 @@
+package com.yoanesber.spring.task_scheduler.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaBatchConfig {
+
+    // Number of statements Hibernate sends in one JDBC batch, also the flush interval of the EntityBatchWriter
+    @Value("${scheduler.batch.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    // JDBC batching of the entity writes, the updates and inserts are ordered by entity so that consecutive statements can share a batch
+    // A property set with spring.jpa.properties.* takes precedence
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", jdbcBatchSize);
+            properties.putIfAbsent("hibernate.order_updates", true);
+            properties.putIfAbsent("hibernate.order_inserts", true);
+            properties.putIfAbsent("hibernate.jdbc.batch_versioned_data", true);
+        };
+    }
+}
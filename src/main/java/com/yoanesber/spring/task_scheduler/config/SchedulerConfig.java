@@ -1,13 +1,39 @@
 package com.yoanesber.spring.task_scheduler.config;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import com.yoanesber.spring.task_scheduler.scheduler.JobClass;
+
 @Configuration
 public class SchedulerConfig {
 
+    private final Environment environment;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // Kebijakan saat antrian executor kelas tugas penuh
+    public enum RejectionPolicy {
+        // Tugas ditolak, JobRegistry mencatatnya sebagai eksekusi yang dilewati
+        ABORT,
+        // Tugas dijalankan pada thread yang memicunya
+        CALLER_RUNS
+    }
+
+    public SchedulerConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     // Konfigurasi task scheduler
     @Value("${spring.task.scheduling.pool.size}")
     private int poolSize;
@@ -36,6 +62,14 @@ public class SchedulerConfig {
     @Value("${spring.task.scheduling.daemon}")
     private boolean daemon;
 
+    // Konfigurasi eksekusi partisi, 0 berarti sama dengan jumlah core CPU
+    @Value("${scheduler.batch.partition-count:0}")
+    private int partitionCount;
+
+    // Konfigurasi virtual thread (Java 21)
+    @Value("${scheduler.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
     /*
     *   ThreadPoolTaskScheduler adalah implementasi dari TaskScheduler yang menggunakan thread pool untuk menjalankan tugas-tugas terjadwal secara asinkron.
     *   Beberapa konfigurasi yang dapat diatur antara lain:
@@ -116,4 +150,106 @@ public class SchedulerConfig {
 
         return scheduler;
     }
+
+    // Executor untuk menjalankan partisi-partisi dari satu tugas secara paralel
+    // Jumlah thread sama dengan jumlah partisi, sehingga setiap partisi berjalan pada thread-nya sendiri
+    @Bean(name = "partitionTaskExecutor")
+    public ThreadPoolTaskExecutor partitionTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        int threads = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+
+        // Konfigurasi executor
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("partition-");
+        executor.setWaitForTasksToCompleteOnShutdown(waitForTasksToCompleteOnShutdown);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        executor.setDaemon(daemon);
+        executor.initialize();
+
+        return executor;
+    }
+
+    /*
+    *   Executor per kelas tugas (JobClass):
+    *   - ThreadPoolTaskScheduler hanya memicu tugas, isi tugas dijalankan pada executor kelasnya, sehingga poolSize cukup kecil (1-2 thread).
+    *   - Setiap kelas memiliki jumlah thread, kapasitas antrian, kebijakan penolakan dan prioritas thread sendiri
+    *     (scheduler.executors.<kelas>.pool-size, queue-capacity, rejection-policy, thread-priority),
+    *     sehingga tugas pemeliharaan bulanan yang berat tidak dapat menghabiskan thread untuk transisi status harian.
+    *
+    *   Mode virtual thread (scheduler.virtual-threads.enabled=true):
+    *   - Thread dari executor kelas tugas dan pekerjaan I/O per user di dalamnya (ioTaskExecutor) adalah virtual thread.
+    *   - Executor kelas tugas tetap berupa pool berukuran tetap: pool-size tetap menjadi batas jumlah tugas yang berjalan bersamaan,
+    *     sedangkan antrian, kebijakan penolakan dan metrik saturasi tetap berlaku.
+    *   - Virtual thread selalu daemon dengan prioritas normal, sehingga thread-priority dan daemon tidak diterapkan pada executor kelas tugas.
+    *   - Jumlah pekerjaan I/O yang berjalan bersamaan dibatasi oleh semaphore pada FanOutExecutor (scheduler.virtual-threads.max-concurrency),
+    *     agar tidak melebihi jumlah koneksi database dan pengiriman email yang diizinkan.
+    *   Jika mode ini tidak aktif, pekerjaan per user dijalankan pada thread tugas itu sendiri.
+    */
+
+    // Executor untuk transisi status akun dan kredensial yang sensitif terhadap latensi
+    @Bean(name = "stateTransitionTaskExecutor")
+    public ThreadPoolTaskExecutor stateTransitionTaskExecutor() {
+        return jobClassExecutor(JobClass.STATE_TRANSITION, 2, Thread.NORM_PRIORITY + 2);
+    }
+
+    // Executor untuk pemeliharaan massal, misalnya pembersihan bulanan
+    @Bean(name = "maintenanceTaskExecutor")
+    public ThreadPoolTaskExecutor maintenanceTaskExecutor() {
+        return jobClassExecutor(JobClass.MAINTENANCE, 1, Thread.NORM_PRIORITY - 2);
+    }
+
+    // Executor untuk tugas notifikasi
+    @Bean(name = "notificationTaskExecutor")
+    public ThreadPoolTaskExecutor notificationTaskExecutor() {
+        return jobClassExecutor(JobClass.NOTIFICATION, 1, Thread.NORM_PRIORITY);
+    }
+
+    // Executor untuk pekerjaan I/O per user di dalam tugas (query database, pengiriman email)
+    @Bean(name = "ioTaskExecutor")
+    public TaskExecutor ioTaskExecutor() {
+        if (virtualThreadsEnabled) {
+            return virtualThreadExecutor("io-");
+        }
+
+        return new SyncTaskExecutor();
+    }
+
+    private ThreadPoolTaskExecutor jobClassExecutor(JobClass jobClass, int defaultPoolSize, int defaultThreadPriority) {
+        String prefix = "scheduler.executors." + jobClass.getPropertyKey() + ".";
+        int threads = environment.getProperty(prefix + "pool-size", Integer.class, defaultPoolSize);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        // Konfigurasi executor
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(environment.getProperty(prefix + "queue-capacity", Integer.class, 10));
+        executor.setRejectedExecutionHandler(
+            environment.getProperty(prefix + "rejection-policy", RejectionPolicy.class, RejectionPolicy.ABORT) == RejectionPolicy.CALLER_RUNS
+                ? new ThreadPoolExecutor.CallerRunsPolicy()
+                : new ThreadPoolExecutor.AbortPolicy());
+        if (virtualThreadsEnabled) {
+            if (environment.containsProperty(prefix + "thread-priority")) {
+                logger.warn("Ignoring {}thread-priority: virtual threads always run with normal priority", prefix);
+            }
+            executor.setThreadFactory(Thread.ofVirtual().name(jobClass.getPropertyKey() + "-", 1).factory());
+        } else {
+            executor.setThreadNamePrefix(jobClass.getPropertyKey() + "-");
+            executor.setThreadPriority(environment.getProperty(prefix + "thread-priority", Integer.class, defaultThreadPriority));
+            executor.setDaemon(daemon);
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(waitForTasksToCompleteOnShutdown);
+        executor.setAwaitTerminationSeconds(awaitTerminationSeconds);
+        executor.initialize();
+
+        return executor;
+    }
+
+    private SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(awaitTerminationSeconds * 1000L);
+
+        return executor;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.yoanesber.spring.task_scheduler.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+    // <job name>#partition-<partition index>
+    @Id
+    @Column(length = 120)
+    private String name;
+
+    @Column(nullable = false, length = 100)
+    private String jobName;
+
+    @Column(nullable = false)
+    private int partitionIndex;
+
+    @Column(nullable = false)
+    private int partitionCount;
+
+    // Start of the run, every attempt of the run computes its cutoffs from it
+    @Column(nullable = false)
+    private Instant runTime;
+
+    // Last id committed by the partition
+    @Column(nullable = false)
+    private long lastId;
+
+    @Column(nullable = false)
+    private long processedRows;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(nullable = false)
+    private Instant updatedDate;
+}
@@ -0,0 +1,63 @@
+package com.yoanesber.spring.task_scheduler.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "job_execution")
+public class JobExecution {
+
+    public enum Outcome {
+        SUCCESS,
+        FAILURE,
+        // Stopped between two chunks, e.g. after its lock has been lost
+        STOPPED,
+        // Not run because the job is running on another node
+        SKIPPED
+    }
+
+    @Id
+    @Column(length = 36)
+    private String runId;
+
+    @Column(nullable = false, length = 100)
+    private String jobName;
+
+    @Column(nullable = false, length = 255)
+    private String nodeId;
+
+    // Time the run was handed to the executor of its job class: when the schedule fired, the job was triggered or its queued run was started
+    @Column(nullable = false)
+    private Instant scheduledStart;
+
+    @Column(nullable = false)
+    private Instant actualStart;
+
+    @Column(nullable = false)
+    private long durationMs;
+
+    @Column(nullable = false)
+    private long rowsAffected;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Outcome outcome;
+
+    @Column(length = 1000)
+    private String error;
+}
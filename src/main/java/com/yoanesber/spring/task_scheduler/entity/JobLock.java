@@ -0,0 +1,37 @@
+package com.yoanesber.spring.task_scheduler.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "job_lock")
+public class JobLock {
+    // Name of the locked job, or of a partition of the job
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    // Node holding (or last holding) the lock
+    @Column(nullable = false, length = 100)
+    private String lockedBy;
+
+    @Column(nullable = false)
+    private Instant lockedAt;
+
+    // The lock is held until this time, unless it is extended by a heartbeat
+    @Column(nullable = false)
+    private Instant lockedUntil;
+}
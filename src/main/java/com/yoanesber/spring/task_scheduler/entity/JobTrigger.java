@@ -0,0 +1,29 @@
+package com.yoanesber.spring.task_scheduler.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "job_trigger")
+public class JobTrigger {
+    @Id
+    @Column(length = 100)
+    private String jobName;
+
+    // Time the schedule of the job last fired, the executions due between this time and the next startup were missed
+    @Column(nullable = false)
+    private Instant lastFiredDate;
+}
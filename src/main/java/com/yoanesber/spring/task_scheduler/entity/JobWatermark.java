@@ -0,0 +1,32 @@
+package com.yoanesber.spring.task_scheduler.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "job_watermark")
+public class JobWatermark {
+    @Id
+    @Column(length = 100)
+    private String jobName;
+
+    // Time of the last successful run, the next run only has to look at the rows that changed state after it
+    @Column(nullable = false)
+    private Instant watermark;
+
+    @Column(nullable = false)
+    private Instant updatedDate;
+}
@@ -0,0 +1,86 @@
+package com.yoanesber.spring.task_scheduler.expiration;
+
+import java.util.Arrays;
+
+// Binary min-heap of (expiration time in epoch millis, user id) pairs kept in two parallel primitive arrays,
+// so an entry costs 16 bytes instead of a boxed object per user
+final class ExpirationHeap {
+
+    private long[] expirationTimes;
+
+    private long[] userIds;
+
+    private int size;
+
+    ExpirationHeap(int initialCapacity) {
+        this.expirationTimes = new long[Math.max(1, initialCapacity)];
+        this.userIds = new long[Math.max(1, initialCapacity)];
+    }
+
+    void add(long expirationTime, long userId) {
+        if (size == expirationTimes.length) {
+            expirationTimes = Arrays.copyOf(expirationTimes, size * 2);
+            userIds = Arrays.copyOf(userIds, size * 2);
+        }
+
+        // Sift up
+        int index = size++;
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (expirationTimes[parent] <= expirationTime) {
+                break;
+            }
+            expirationTimes[index] = expirationTimes[parent];
+            userIds[index] = userIds[parent];
+            index = parent;
+        }
+        expirationTimes[index] = expirationTime;
+        userIds[index] = userId;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Expiration time of the earliest entry, the heap must not be empty
+    long peekExpirationTime() {
+        return expirationTimes[0];
+    }
+
+    // Remove the earliest entry and return its user id, the heap must not be empty
+    long pollUserId() {
+        long userId = userIds[0];
+        size--;
+        if (size == 0) {
+            return userId;
+        }
+
+        // Sift the last entry down from the root
+        long expirationTime = expirationTimes[size];
+        long lastUserId = userIds[size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && expirationTimes[child + 1] < expirationTimes[child]) {
+                child++;
+            }
+            if (expirationTime <= expirationTimes[child]) {
+                break;
+            }
+            expirationTimes[index] = expirationTimes[child];
+            userIds[index] = userIds[child];
+            index = child;
+        }
+        expirationTimes[index] = expirationTime;
+        userIds[index] = lastUserId;
+
+        return userId;
+    }
+}
@@ -0,0 +1,161 @@
+package com.yoanesber.spring.task_scheduler.expiration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.batch.ChunkProcessor;
+import com.yoanesber.spring.task_scheduler.metrics.JobMetrics;
+import com.yoanesber.spring.task_scheduler.repository.UserExpiration;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+
+/*
+*   In-memory index of the account and credentials expirations due within the next horizonHours.
+*   - The index is loaded from the users table when the application is ready, and reloaded every reloadIntervalSeconds
+*     and after setAccountExpirationDate has changed expiration dates.
+*   - Every tickMillis, the ThreadPoolTaskScheduler expires the users whose expiration time has passed, at most batchSize
+*     users per tick, so the accounts expire within seconds instead of in one burst when the daily cron fires.
+*   - The updates re-check the flags and the expiration date, so a stale entry (e.g. an expiration date moved since the last load,
+*     or a user already expired by the daily job or by another node) updates nothing. The daily jobs stay as a safety net.
+*/
+@Component
+public class ExpirationIndex {
+
+    private static final String JOB_NAME = "expirationIndex";
+
+    private final UserRepository userRepository;
+
+    private final ChunkProcessor chunkProcessor;
+
+    private final JobMetrics jobMetrics;
+
+    private final ThreadPoolTaskScheduler threadPoolTaskScheduler;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Object lock = new Object();
+
+    private ExpirationHeap accountExpirations = new ExpirationHeap(16);
+
+    private ExpirationHeap credentialsExpirations = new ExpirationHeap(16);
+
+    @Value("${scheduler.expiration-index.enabled:false}")
+    private boolean enabled;
+
+    // Only the expirations due within this horizon are kept in memory
+    @Value("${scheduler.expiration-index.horizon-hours:48}")
+    private long horizonHours;
+
+    @Value("${scheduler.expiration-index.reload-interval-seconds:900}")
+    private long reloadIntervalSeconds;
+
+    @Value("${scheduler.expiration-index.tick-millis:1000}")
+    private long tickMillis;
+
+    // Maximum number of accounts (and of credentials) expired per tick
+    @Value("${scheduler.expiration-index.batch-size:500}")
+    private int batchSize;
+
+    public ExpirationIndex(UserRepository userRepository, ChunkProcessor chunkProcessor, JobMetrics jobMetrics,
+        @Qualifier("threadPoolTaskScheduler") ThreadPoolTaskScheduler threadPoolTaskScheduler, Clock clock) {
+        this.userRepository = userRepository;
+        this.chunkProcessor = chunkProcessor;
+        this.jobMetrics = jobMetrics;
+        this.threadPoolTaskScheduler = threadPoolTaskScheduler;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        // The first reload runs right away and loads the index
+        threadPoolTaskScheduler.scheduleAtFixedRate(this::reload, Duration.ofSeconds(reloadIntervalSeconds));
+        threadPoolTaskScheduler.scheduleWithFixedDelay(this::expireDueUsers, Duration.ofMillis(tickMillis));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Rebuild the index from the users table, the current index stays in use until the new one is loaded
+    public void reload() {
+        try {
+            Instant until = clock.instant().plus(Duration.ofHours(horizonHours));
+
+            ExpirationHeap accounts = load((lastId, limit) -> userRepository.findAccountExpirationsBefore(until, lastId, limit));
+            ExpirationHeap credentials = load((lastId, limit) -> userRepository.findCredentialsExpirationsBefore(until, lastId, limit));
+
+            synchronized (lock) {
+                accountExpirations = accounts;
+                credentialsExpirations = credentials;
+            }
+            logger.info("Expiration index loaded with {} account and {} credentials expirations until {}", accounts.size(), credentials.size(), until);
+        } catch (Exception e) {
+            logger.error("Exception while loading the expiration index with message: {}", e.getMessage());
+        }
+    }
+
+    // Expire the accounts and credentials whose expiration time has passed, returns the number of users updated
+    public int expireDueUsers() {
+        try {
+            Instant now = clock.instant();
+            List<Long> accountUserIds;
+            List<Long> credentialsUserIds;
+            synchronized (lock) {
+                accountUserIds = pollDue(accountExpirations, now.toEpochMilli());
+                credentialsUserIds = pollDue(credentialsExpirations, now.toEpochMilli());
+            }
+
+            int updatedUsers = 0;
+            if (!accountUserIds.isEmpty()) {
+                updatedUsers += chunkProcessor.writeChunk(JOB_NAME, () -> userRepository.setAccountsToExpiredByIds(now, accountUserIds));
+            }
+            if (!credentialsUserIds.isEmpty()) {
+                updatedUsers += chunkProcessor.writeChunk(JOB_NAME, () -> userRepository.setCredentialsToExpiredByIds(now, credentialsUserIds));
+            }
+
+            if (updatedUsers > 0) {
+                jobMetrics.recordRows(JOB_NAME, JobMetrics.ROWS_UPDATED, updatedUsers);
+                logger.debug("Expiration index expired {} users", updatedUsers);
+            }
+            return updatedUsers;
+        } catch (Exception e) {
+            // The users stay unexpired in the database, the next reload puts them back into the index
+            logger.error("Exception while expiring due users with message: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private ExpirationHeap load(ChunkProcessor.KeysetPageReader<UserExpiration> pageReader) {
+        ExpirationHeap heap = new ExpirationHeap(1024);
+        chunkProcessor.readInKeysetChunks(JOB_NAME, pageReader, UserExpiration::getId,
+            expirations -> expirations.forEach(expiration -> heap.add(expiration.getExpirationDate().toEpochMilli(), expiration.getId())));
+
+        return heap;
+    }
+
+    private List<Long> pollDue(ExpirationHeap heap, long now) {
+        List<Long> userIds = new ArrayList<>();
+        while (!heap.isEmpty() && heap.peekExpirationTime() <= now && userIds.size() < batchSize) {
+            userIds.add(heap.pollUserId());
+        }
+
+        return userIds;
+    }
+}
@@ -0,0 +1,46 @@
+package com.yoanesber.spring.task_scheduler.journal;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.service.JobExecutionService;
+
+/*
+*   Actuator endpoint of the job execution journal, exposed over HTTP once "executions" is added to management.endpoints.web.exposure.include:
+*   - GET /actuator/executions?days=7          : p50/p99/max duration of every job over the last days (7 by default)
+*   - GET /actuator/executions/{name}?days=30  : p50/p99/max duration of a job per day (30 days by default) and its latest runs
+*/
+@Component
+@Endpoint(id = "executions")
+public class ExecutionsEndpoint {
+
+    private final JobExecutionService jobExecutionService;
+
+    public ExecutionsEndpoint(JobExecutionService jobExecutionService) {
+        this.jobExecutionService = jobExecutionService;
+    }
+
+    @ReadOperation
+    public List<JobDurationStats> executions(@Nullable Integer days) {
+        try {
+            return jobExecutionService.getDurationStats(days != null ? days : 7);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    @ReadOperation
+    public JobExecutionHistory execution(@Selector String name, @Nullable Integer days) {
+        try {
+            return jobExecutionService.getHistory(name, days != null ? days : 30);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.yoanesber.spring.task_scheduler.journal;
+
+import java.time.LocalDate;
+
+// Duration percentiles of the runs of a job started between from and to (UTC days, both included)
+// The percentiles only cover the successful runs, they are null when the period has none.
+// The runs stopped between two chunks (drain for a shutdown, lost lock) are counted apart from the failures.
+public record JobDurationStats(String jobName, LocalDate from, LocalDate to, int runs, int failures, int stopped, Long p50Millis,
+    Long p99Millis, Long maxMillis) {
+}
@@ -0,0 +1,9 @@
+package com.yoanesber.spring.task_scheduler.journal;
+
+import java.util.List;
+
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+
+// Daily duration percentiles and latest runs of a job
+public record JobExecutionHistory(String jobName, List<JobDurationStats> days, List<JobExecution> latestRuns) {
+}
@@ -0,0 +1,185 @@
+package com.yoanesber.spring.task_scheduler.journal;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+import com.yoanesber.spring.task_scheduler.repository.JobExecutionRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/*
+*   Asynchronous, batched appender of the job execution journal (job_execution table).
+*   - append() only offers the run to a bounded queue and never blocks the job. When the queue is full, the run is dropped
+*     and counted in scheduler.journal.dropped, the job itself is not slowed down.
+*   - A single writer thread drains the queue and inserts up to batchSize runs with one JDBC batch, at the latest
+*     flushIntervalMillis after the first run of the batch was appended. A batch that fails is logged and dropped.
+*   - The runs older than retentionDays are deleted once a day by the ThreadPoolTaskScheduler.
+*/
+@Component
+public class JobJournal {
+
+    private static final String INSERT_EXECUTION = """
+    insert into job_execution (run_id, job_name, node_id, scheduled_start, actual_start, duration_ms, rows_affected, outcome, error)
+    values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final JobExecutionRepository jobExecutionRepository;
+
+    private final ThreadPoolTaskScheduler threadPoolTaskScheduler;
+
+    private final Clock clock;
+
+    private final BlockingQueue<JobExecution> queue;
+
+    private final Counter droppedExecutions;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scheduler.journal.batch-size:100}")
+    private int batchSize;
+
+    @Value("${scheduler.journal.flush-interval-millis:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${scheduler.journal.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${spring.task.scheduling.await-termination-seconds}")
+    private int awaitTerminationSeconds;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public JobJournal(JdbcTemplate jdbcTemplate, JobExecutionRepository jobExecutionRepository,
+        @Qualifier("threadPoolTaskScheduler") ThreadPoolTaskScheduler threadPoolTaskScheduler, Clock clock, MeterRegistry meterRegistry,
+        @Value("${scheduler.journal.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobExecutionRepository = jobExecutionRepository;
+        this.threadPoolTaskScheduler = threadPoolTaskScheduler;
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.droppedExecutions = Counter.builder("scheduler.journal.dropped")
+            .description("Job runs not written to the journal because its queue was full")
+            .register(meterRegistry);
+        meterRegistry.gauge("scheduler.journal.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = Thread.ofPlatform().name("journal-writer").daemon(true).start(this::write);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRetention() {
+        if (enabled) {
+            threadPoolTaskScheduler.scheduleAtFixedRate(this::deleteExpiredExecutions, Duration.ofDays(1));
+        }
+    }
+
+    // Write the runs that are still queued, waiting at most awaitTerminationSeconds
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(awaitTerminationSeconds));
+        if (!queue.isEmpty()) {
+            logger.warn("Job journal stopped with {} runs still queued", queue.size());
+        }
+    }
+
+    // Queue a run for the journal without blocking, returns false if the run has been dropped
+    public boolean append(JobExecution execution) {
+        if (!enabled) {
+            return false;
+        }
+
+        if (!queue.offer(execution)) {
+            droppedExecutions.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Delete the runs older than the retention, returns the number of runs deleted
+    public int deleteExpiredExecutions() {
+        try {
+            return jobExecutionRepository.deleteStartedBefore(clock.instant().minus(Duration.ofDays(retentionDays)));
+        } catch (Exception e) {
+            logger.error("Exception while deleting expired job runs with message: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    private void write() {
+        while (running || !queue.isEmpty()) {
+            try {
+                JobExecution first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                // Wait up to flushIntervalMillis for the batch to fill up, the runs of a busy period are written together
+                List<JobExecution> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize && running) {
+                    JobExecution next = queue.poll(Math.max(flushAt - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+
+                insert(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Exception on thread {} while writing the job journal with message: {}", Thread.currentThread().getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void insert(List<JobExecution> batch) {
+        jdbcTemplate.batchUpdate(INSERT_EXECUTION, batch, batch.size(), (ps, execution) -> {
+            ps.setString(1, execution.getRunId());
+            ps.setString(2, execution.getJobName());
+            ps.setString(3, execution.getNodeId());
+            ps.setObject(4, execution.getScheduledStart().atOffset(ZoneOffset.UTC));
+            ps.setObject(5, execution.getActualStart().atOffset(ZoneOffset.UTC));
+            ps.setLong(6, execution.getDurationMs());
+            ps.setLong(7, execution.getRowsAffected());
+            ps.setString(8, execution.getOutcome().name());
+            ps.setString(9, execution.getError());
+        });
+    }
+}
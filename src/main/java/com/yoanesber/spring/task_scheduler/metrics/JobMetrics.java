@@ -0,0 +1,102 @@
+package com.yoanesber.spring.task_scheduler.metrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.scheduler.JobClass;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+*   Micrometer metrics of the scheduled jobs, all tagged with the job name:
+*   - scheduler.job.start.lag : delay between the time a run was fired by its schedule, or triggered, and the time it actually started
+*   - scheduler.job.duration  : duration of a run, tagged with its outcome (success or failure)
+*   - scheduler.job.rows      : rows scanned, updated, failed, queued for notification and deleted, tagged with the type
+*   - scheduler.job.skipped   : executions skipped because a run of the job was already running or queued, or because
+*                               the executor of the job class rejected it, tagged with the reason
+*   - scheduler.executor.saturation, scheduler.executor.queue.saturation : share of the threads busy and of the queue filled
+*                               in the executor of every job class, tagged with the class
+*   The pool metrics of the ThreadPoolTaskScheduler and the executors (executor.active, executor.queued, ...) are bound by Spring Boot Actuator.
+*/
+@Component
+public class JobMetrics {
+
+    public static final String ROWS_SCANNED = "scanned";
+
+    public static final String ROWS_UPDATED = "updated";
+
+    public static final String ROWS_FAILED = "failed";
+
+    public static final String ROWS_QUEUED = "queued";
+
+    public static final String ROWS_DELETED = "deleted";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Clock clock;
+
+    public JobMetrics(MeterRegistry meterRegistry, Clock clock) {
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    // Bind the saturation gauges of the executor of a job class, its other pool metrics (executor.*) are bound by Spring Boot Actuator
+    public void bindExecutor(JobClass jobClass, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("scheduler.executor.saturation", executor, pool -> (double) pool.getActiveCount() / pool.getMaxPoolSize())
+            .description("Share of the threads of a job class executor that are busy")
+            .tag("class", jobClass.getPropertyKey())
+            .register(meterRegistry);
+        Gauge.builder("scheduler.executor.queue.saturation", executor,
+                pool -> pool.getQueueCapacity() > 0 ? (double) pool.getQueueSize() / pool.getQueueCapacity() : 0)
+            .description("Share of the queue of a job class executor that is filled")
+            .tag("class", jobClass.getPropertyKey())
+            .register(meterRegistry);
+    }
+
+    // Record the delay between the scheduled start of a run, as recorded by the JobRegistry, and now
+    public void recordStart(String jobName, Instant scheduledStart) {
+        Duration lag = Duration.between(scheduledStart, clock.instant());
+        Timer.builder("scheduler.job.start.lag")
+            .description("Delay between the scheduled and the actual start of a job run")
+            .tag("job", jobName)
+            .register(meterRegistry)
+            .record(lag.isNegative() ? Duration.ZERO : lag);
+    }
+
+    // Record the duration and the outcome of a run
+    public void recordRun(String jobName, long durationNanos, boolean success) {
+        Timer.builder("scheduler.job.duration")
+            .description("Duration of a job run")
+            .tag("job", jobName)
+            .tag("outcome", success ? "success" : "failure")
+            .register(meterRegistry)
+            .record(Duration.ofNanos(durationNanos));
+    }
+
+    // Record an execution that has not been started because of the concurrency policy of the job
+    public void recordSkip(String jobName, String reason) {
+        Counter.builder("scheduler.job.skipped")
+            .description("Executions of a job skipped by its concurrency policy")
+            .tag("job", jobName)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    // Record the number of rows scanned, updated, failed or queued by a job
+    public void recordRows(String jobName, String type, long rows) {
+        Counter.builder("scheduler.job.rows")
+            .description("Rows processed by a job")
+            .tag("job", jobName)
+            .tag("type", type)
+            .register(meterRegistry)
+            .increment(rows);
+    }
+}
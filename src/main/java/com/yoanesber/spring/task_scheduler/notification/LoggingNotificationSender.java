@@ -0,0 +1,40 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Stand-in NotificationSender that logs the notifications and, if an outbox file is configured, appends them to that file
+public class LoggingNotificationSender implements NotificationSender {
+
+    private final Path outboxFile;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public LoggingNotificationSender(Path outboxFile) {
+        this.outboxFile = outboxFile;
+    }
+
+    @Override
+    public void send(List<NotificationRecord> notifications) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (NotificationRecord notification : notifications) {
+            logger.info("Sending {} email to user {} ({}): {}", notification.type(), notification.userId(), notification.userName(), notification.email());
+            lines.append(notification.type()).append(',')
+                .append(notification.userId()).append(',')
+                .append(notification.userName()).append(',')
+                .append(notification.email()).append(System.lineSeparator());
+        }
+
+        if (outboxFile != null) {
+            synchronized (this) {
+                Files.writeString(outboxFile, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.batch.FanOutExecutor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/*
+*   Producer/consumer pipeline for the notification emails.
+*   - The jobs (producers) put notifications into a bounded queue. When the queue is full, submit() blocks,
+*     which slows down the database reader instead of buffering an unbounded number of notifications (backpressure).
+*   - A single dispatcher thread drains the queue in batches, waits for the token bucket rate limiter
+*     and hands every batch to the FanOutExecutor, which caps the number of batches being sent at the same time.
+*   - A batch that fails is retried with exponential backoff, and dropped (logged) after maxAttempts.
+*   - The emails go through the application's NotificationSender bean (e.g. one backed by JavaMailSender),
+*     or through the stand-in LoggingNotificationSender when no such bean is declared.
+*/
+@Component
+public class NotificationPipeline {
+
+    private final NotificationSender notificationSender;
+
+    private final FanOutExecutor fanOutExecutor;
+
+    private final BlockingQueue<NotificationRecord> queue;
+
+    private final TokenBucketRateLimiter rateLimiter;
+
+    private final Counter sentNotifications;
+
+    private final Counter droppedNotifications;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.notification.batch-size:100}")
+    private int batchSize;
+
+    @Value("${scheduler.notification.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${scheduler.notification.initial-backoff-millis:1000}")
+    private long initialBackoffMillis;
+
+    @Value("${scheduler.notification.max-backoff-millis:60000}")
+    private long maxBackoffMillis;
+
+    @Value("${spring.task.scheduling.await-termination-seconds}")
+    private int awaitTerminationSeconds;
+
+    private volatile boolean running;
+
+    private Thread dispatcher;
+
+    public NotificationPipeline(ObjectProvider<NotificationSender> notificationSenders, FanOutExecutor fanOutExecutor, MeterRegistry meterRegistry,
+        @Value("${scheduler.notification.outbox-file:}") String outboxFile,
+        @Value("${scheduler.notification.queue-capacity:10000}") int queueCapacity,
+        @Value("${scheduler.notification.rate-per-second:50}") double ratePerSecond,
+        @Value("${scheduler.notification.burst-capacity:100}") double burstCapacity) {
+        this.notificationSender = notificationSenders.getIfAvailable(
+            () -> new LoggingNotificationSender(outboxFile.isBlank() ? null : Path.of(outboxFile)));
+        this.fanOutExecutor = fanOutExecutor;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.rateLimiter = new TokenBucketRateLimiter(ratePerSecond, burstCapacity);
+
+        this.sentNotifications = Counter.builder("scheduler.notification.sent")
+            .description("Notifications delivered by the NotificationSender")
+            .register(meterRegistry);
+        this.droppedNotifications = Counter.builder("scheduler.notification.dropped")
+            .description("Notifications dropped after the last retry")
+            .register(meterRegistry);
+        meterRegistry.gauge("scheduler.notification.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        dispatcher = Thread.ofPlatform().name("notification-dispatcher").daemon(true).start(this::dispatch);
+    }
+
+    // Flush the notifications that are still queued, waiting at most awaitTerminationSeconds
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(awaitTerminationSeconds));
+        if (!queue.isEmpty()) {
+            logger.warn("Notification pipeline stopped with {} notifications still queued", queue.size());
+        }
+    }
+
+    // Queue a notification, blocking while the queue is full
+    public void submit(NotificationRecord notification) {
+        try {
+            queue.put(notification);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a notification", e);
+        }
+    }
+
+    private void dispatch() {
+        while (running || !queue.isEmpty()) {
+            try {
+                NotificationRecord first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<NotificationRecord> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                rateLimiter.acquire(batch.size());
+                fanOutExecutor.execute(() -> sendWithRetry(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Exception on thread {} while dispatching notifications with message: {}", Thread.currentThread().getName(), e.getMessage());
+            }
+        }
+    }
+
+    private void sendWithRetry(List<NotificationRecord> batch) {
+        long backoffMillis = initialBackoffMillis;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                notificationSender.send(batch);
+                sentNotifications.increment(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    droppedNotifications.increment(batch.size());
+                    logger.error("Dropping {} notifications after {} attempts with message: {}", batch.size(), attempt, e.getMessage());
+                    return;
+                }
+
+                logger.warn("Sending {} notifications failed (attempt {} of {}), retrying in {} ms with message: {}",
+                    batch.size(), attempt, maxAttempts, backoffMillis, e.getMessage());
+            }
+
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                droppedNotifications.increment(batch.size());
+                logger.error("Dropping {} notifications because the sender was interrupted", batch.size());
+                return;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        }
+    }
+}
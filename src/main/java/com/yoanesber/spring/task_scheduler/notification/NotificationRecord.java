@@ -0,0 +1,5 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+// Notification to be sent to a single user
+public record NotificationRecord(long userId, String email, String userName, NotificationType type) {
+}
@@ -0,0 +1,10 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+import java.util.List;
+
+// SPI used by the NotificationPipeline to deliver notifications (e.g. through JavaMailSender or a mail provider API)
+// Implementations must be thread-safe, send the whole batch and throw an exception if the batch should be retried
+public interface NotificationSender {
+
+    void send(List<NotificationRecord> notifications) throws Exception;
+}
@@ -0,0 +1,6 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+public enum NotificationType {
+    EXPIRED_ACCOUNT,
+    EXPIRED_CREDENTIALS
+}
@@ -0,0 +1,41 @@
+package com.yoanesber.spring.task_scheduler.notification;
+
+import java.util.concurrent.TimeUnit;
+
+// Token bucket that refills at permitsPerSecond up to capacity permits
+// A caller that takes more permits than available reserves them and sleeps until they have been refilled
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerSecond;
+
+    private final double capacity;
+
+    private double availablePermits;
+
+    private long lastRefillNanos;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, double capacity) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = capacity;
+        this.availablePermits = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    // Block until the requested number of permits is available
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            availablePermits = Math.min(capacity, availablePermits + (now - lastRefillNanos) * permitsPerSecond / 1e9);
+            lastRefillNanos = now;
+
+            availablePermits -= permits;
+            waitNanos = availablePermits >= 0 ? 0 : (long) (-availablePermits / permitsPerSecond * 1e9);
+        }
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
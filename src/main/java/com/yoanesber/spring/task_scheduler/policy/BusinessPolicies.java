@@ -0,0 +1,61 @@
+package com.yoanesber.spring.task_scheduler.policy;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/*
+*   Holder of the current BusinessPolicy snapshot, read by the job threads without locking.
+*   The snapshot is loaded from the business.policy.* properties at startup, and can be replaced at runtime (see PolicyEndpoint)
+*   without a restart. A replacement only applies to the job runs started after it, a running job keeps the snapshot it started with.
+*/
+@Component
+public class BusinessPolicies {
+
+    private final Environment environment;
+
+    private final AtomicReference<BusinessPolicy> current;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public BusinessPolicies(Environment environment) {
+        this.environment = environment;
+        this.current = new AtomicReference<>(load());
+    }
+
+    public BusinessPolicy current() {
+        return current.get();
+    }
+
+    // Replace the current snapshot with the result of the change, returns the new snapshot
+    // The change is applied again if another update has replaced the snapshot in the meantime, so no update is lost
+    public BusinessPolicy update(UnaryOperator<BusinessPolicy> change) {
+        BusinessPolicy previous;
+        BusinessPolicy policy;
+        do {
+            previous = current.get();
+            policy = change.apply(previous);
+        } while (!current.compareAndSet(previous, policy));
+
+        logger.info("Business policy changed from {} to {}", previous, policy);
+        return policy;
+    }
+
+    // Replace the current snapshot with the values of the business.policy.* properties
+    public BusinessPolicy reload() {
+        BusinessPolicy policy = load();
+        return update(previous -> policy);
+    }
+
+    private BusinessPolicy load() {
+        return new BusinessPolicy(
+            environment.getRequiredProperty("business.policy.allowed-inactive-days", Integer.class),
+            environment.getRequiredProperty("business.policy.expired-account-retention-days", Integer.class),
+            environment.getRequiredProperty("business.policy.expired-credentials-retention-days", Integer.class),
+            environment.getProperty("business.policy.deleted-user-retention-days", Integer.class, 30));
+    }
+}
@@ -0,0 +1,22 @@
+package com.yoanesber.spring.task_scheduler.policy;
+
+// Immutable snapshot of the business policy, a job takes the current snapshot once at its start and uses it for its whole run
+public record BusinessPolicy(int allowedInactiveDays, int expiredAccountRetentionDays, int expiredCredentialsRetentionDays,
+    int deletedUserRetentionDays) {
+
+    public BusinessPolicy {
+        if (allowedInactiveDays < 0 || expiredAccountRetentionDays < 0 || expiredCredentialsRetentionDays < 0 || deletedUserRetentionDays < 0) {
+            throw new IllegalArgumentException("The business policy days must not be negative");
+        }
+    }
+
+    // Copy of this policy with the given values, a null value keeps the current one
+    public BusinessPolicy with(Integer allowedInactiveDays, Integer expiredAccountRetentionDays, Integer expiredCredentialsRetentionDays,
+        Integer deletedUserRetentionDays) {
+        return new BusinessPolicy(
+            allowedInactiveDays != null ? allowedInactiveDays : this.allowedInactiveDays,
+            expiredAccountRetentionDays != null ? expiredAccountRetentionDays : this.expiredAccountRetentionDays,
+            expiredCredentialsRetentionDays != null ? expiredCredentialsRetentionDays : this.expiredCredentialsRetentionDays,
+            deletedUserRetentionDays != null ? deletedUserRetentionDays : this.deletedUserRetentionDays);
+    }
+}
@@ -0,0 +1,47 @@
+package com.yoanesber.spring.task_scheduler.policy;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/*
+*   Actuator endpoint of the business policy, exposed over HTTP once "policy" is added to management.endpoints.web.exposure.include:
+*   - GET    /actuator/policy : the current policy
+*   - POST   /actuator/policy : {"allowedInactiveDays": ..., "expiredAccountRetentionDays": ..., ...}, the values left out are kept
+*   - DELETE /actuator/policy : back to the values of the business.policy.* properties
+*/
+@Component
+@Endpoint(id = "policy")
+public class PolicyEndpoint {
+
+    private final BusinessPolicies businessPolicies;
+
+    public PolicyEndpoint(BusinessPolicies businessPolicies) {
+        this.businessPolicies = businessPolicies;
+    }
+
+    @ReadOperation
+    public BusinessPolicy policy() {
+        return businessPolicies.current();
+    }
+
+    @WriteOperation
+    public BusinessPolicy updatePolicy(@Nullable Integer allowedInactiveDays, @Nullable Integer expiredAccountRetentionDays,
+        @Nullable Integer expiredCredentialsRetentionDays, @Nullable Integer deletedUserRetentionDays) {
+        try {
+            return businessPolicies.update(policy -> policy.with(allowedInactiveDays, expiredAccountRetentionDays,
+                expiredCredentialsRetentionDays, deletedUserRetentionDays));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    @DeleteOperation
+    public BusinessPolicy resetPolicy() {
+        return businessPolicies.reload();
+    }
+}
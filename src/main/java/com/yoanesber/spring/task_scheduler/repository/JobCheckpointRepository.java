@@ -0,0 +1,28 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.yoanesber.spring.task_scheduler.entity.JobCheckpoint;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+    List<JobCheckpoint> findByJobName(String jobName);
+
+    boolean existsByJobName(String jobName);
+
+    // Delete the checkpoints of every partition of a job
+    @Modifying
+    @Transactional
+    @Query(value = """
+    delete from job_checkpoint
+    where job_name = :jobName
+    """, nativeQuery = true)
+    int deleteByJobName(@Param("jobName") String jobName);
+}
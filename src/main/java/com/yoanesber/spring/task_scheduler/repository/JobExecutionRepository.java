@@ -0,0 +1,36 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+
+@Repository
+public interface JobExecutionRepository extends JpaRepository<JobExecution, String> {
+
+    // Runs of a job started since the given time, in start order
+    List<JobExecution> findByJobNameAndActualStartGreaterThanEqualOrderByActualStart(String jobName, Instant since);
+
+    // Runs of all the jobs started since the given time, in start order
+    List<JobExecution> findByActualStartGreaterThanEqualOrderByActualStart(Instant since);
+
+    // Latest runs of a job, latest first
+    List<JobExecution> findTop20ByJobNameOrderByActualStartDesc(String jobName);
+
+    // Delete the runs started before the retention cutoff
+    @Modifying
+    @Transactional
+    @Query(value = """
+    delete from job_execution
+    where
+        actual_start < :cutoff
+    """, nativeQuery = true)
+    int deleteStartedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,66 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.yoanesber.spring.task_scheduler.entity.JobLock;
+
+// The lease times are computed from the time of the database (current_timestamp), so the nodes do not depend on their own clocks
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+    // Take the lock if it has expired, returns 1 if the lock has been taken
+    @Modifying
+    @Transactional
+    @Query(value = """
+    update job_lock
+    set
+        locked_by = :owner,
+        locked_at = current_timestamp,
+        locked_until = current_timestamp + interval '1' second * cast(:ttlSeconds as bigint)
+    where
+        name = :name
+        and locked_until <= current_timestamp
+    """, nativeQuery = true)
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner, @Param("ttlSeconds") long ttlSeconds);
+
+    // Create the lock held by the owner if it does not exist yet, returns 1 if the lock has been created
+    @Modifying
+    @Transactional
+    @Query(value = """
+    insert into job_lock (name, locked_by, locked_at, locked_until)
+    select :name, :owner, current_timestamp, current_timestamp + interval '1' second * cast(:ttlSeconds as bigint)
+    where not exists (select 1 from job_lock where name = :name)
+    """, nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("owner") String owner, @Param("ttlSeconds") long ttlSeconds);
+
+    // Extend a lock that is still held by the owner, returns 0 if the lock has been lost
+    @Modifying
+    @Transactional
+    @Query(value = """
+    update job_lock
+    set
+        locked_until = current_timestamp + interval '1' second * cast(:ttlSeconds as bigint)
+    where
+        name = :name
+        and locked_by = :owner
+        and locked_until > current_timestamp
+    """, nativeQuery = true)
+    int extend(@Param("name") String name, @Param("owner") String owner, @Param("ttlSeconds") long ttlSeconds);
+
+    // Release a lock held by the owner, the lock is free again once it has been held for at least minHoldSeconds
+    @Modifying
+    @Transactional
+    @Query(value = """
+    update job_lock
+    set
+        locked_until = greatest(current_timestamp, locked_at + interval '1' second * cast(:minHoldSeconds as bigint))
+    where
+        name = :name
+        and locked_by = :owner
+    """, nativeQuery = true)
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("minHoldSeconds") long minHoldSeconds);
+}
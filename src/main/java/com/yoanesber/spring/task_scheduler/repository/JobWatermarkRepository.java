@@ -0,0 +1,10 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.yoanesber.spring.task_scheduler.entity.JobWatermark;
+
+@Repository
+public interface JobWatermarkRepository extends JpaRepository<JobWatermark, String> {
+}
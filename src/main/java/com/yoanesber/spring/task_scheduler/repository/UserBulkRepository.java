@@ -0,0 +1,13 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.util.List;
+
+import com.yoanesber.spring.task_scheduler.entity.User;
+
+// Bulk writes of the UserRepository that bypass the persistence context
+public interface UserBulkRepository {
+
+    // Insert the users with JDBC batches, for seeding and migration data. The ids are assigned by the identity column
+    // and are not set on the given users. Returns the number of users inserted
+    int insertAll(List<User> users);
+}
@@ -0,0 +1,71 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.yoanesber.spring.task_scheduler.entity.User;
+
+// The User id is generated by an IDENTITY column, which makes Hibernate insert every entity on its own to read its id back,
+// so the bulk inserts are sent as plain JDBC batches instead
+public class UserBulkRepositoryImpl implements UserBulkRepository {
+
+    private static final String INSERT_USER = """
+    insert into users (username, password, email, firstname, lastname, is_enabled, is_account_non_expired, is_account_non_locked,
+        is_credentials_non_expired, is_deleted, account_expiration_date, credentials_expiration_date, last_login, user_type,
+        created_by, created_date, updated_by, updated_date)
+    values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${scheduler.batch.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    public UserBulkRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int insertAll(List<User> users) {
+        jdbcTemplate.batchUpdate(INSERT_USER, users, jdbcBatchSize, UserBulkRepositoryImpl::setValues);
+        return users.size();
+    }
+
+    private static void setValues(PreparedStatement ps, User user) throws SQLException {
+        ps.setString(1, user.getUserName());
+        ps.setString(2, user.getPassword());
+        ps.setString(3, user.getEmail());
+        ps.setString(4, user.getFirstName());
+        ps.setString(5, user.getLastName());
+        ps.setBoolean(6, user.isEnabled());
+        ps.setBoolean(7, user.isAccountNonExpired());
+        ps.setBoolean(8, user.isAccountNonLocked());
+        ps.setBoolean(9, user.isCredentialsNonExpired());
+        ps.setBoolean(10, user.isDeleted());
+        setInstant(ps, 11, user.getAccountExpirationDate());
+        setInstant(ps, 12, user.getCredentialsExpirationDate());
+        setInstant(ps, 13, user.getLastLogin());
+        ps.setString(14, user.getUserType());
+        ps.setString(15, user.getCreatedBy());
+        setInstant(ps, 16, user.getCreatedDate());
+        ps.setString(17, user.getUpdatedBy());
+        setInstant(ps, 18, user.getUpdatedDate());
+    }
+
+    private static void setInstant(PreparedStatement ps, int index, Instant instant) throws SQLException {
+        if (instant == null) {
+            ps.setNull(index, Types.TIMESTAMP_WITH_TIMEZONE);
+        } else {
+            ps.setObject(index, instant.atOffset(ZoneOffset.UTC));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+// Projection with the columns needed to notify a user, read without loading the User entity into the persistence context
+public interface UserContact {
+
+    Long getId();
+
+    String getEmail();
+
+    String getUserName();
+}
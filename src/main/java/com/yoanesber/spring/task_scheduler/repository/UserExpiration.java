@@ -0,0 +1,11 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.time.Instant;
+
+// Projection with the id and an expiration date of a user, used to load the ExpirationIndex
+public interface UserExpiration {
+
+    Long getId();
+
+    Instant getExpirationDate();
+}
@@ -0,0 +1,25 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import java.time.Instant;
+
+// Projection with the columns the lifecycle pass evaluates the state transitions of a user on
+public interface UserLifecycleState {
+
+    Long getId();
+
+    String getEmail();
+
+    String getUserName();
+
+    Instant getLastLogin();
+
+    Instant getAccountExpirationDate();
+
+    Instant getCredentialsExpirationDate();
+
+    boolean isAccountNonExpired();
+
+    boolean isCredentialsNonExpired();
+
+    boolean isDeleted();
+}
@@ -1,7 +1,9 @@
 package com.yoanesber.spring.task_scheduler.repository;
 
+import java.time.Instant;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -9,20 +11,29 @@ import org.springframework.stereotype.Repository;
 import com.yoanesber.spring.task_scheduler.entity.User;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    // Query to find users who have not logged in for a certain period of time
+public interface UserRepository extends JpaRepository<User, Long>, UserBulkRepository {
+    // The queries that return users are keyset-paginated: they return at most :limit users with an id greater than :lastId, in id order,
+    // so the callers can walk the whole table in bounded chunks by passing the last id of the previous page.
+    // The time predicates compare the columns with a cutoff computed by the caller (e.g. last_login <= :lastLoginCutoff)
+    // instead of computing an interval per row, so they can use the partial indexes of the db/migration scripts
+
+    // Query to find users who have not logged in since the cutoff
     @Query(value = """
     select
         id
     from
         users
     where
-        last_login is not null
-        and EXTRACT(DAY FROM (NOW() - last_login)) > :allowedInactiveDays
+        last_login <= :lastLoginCutoff
         and is_account_non_expired
-        and lower(username) <> 'superadmin' 
+        and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findUsersInactiveForDays(@Param("allowedInactiveDays") int allowedInactiveDays);
+    List<Long> findUsersLastLoggedInBefore(@Param("lastLoginCutoff") Instant lastLoginCutoff,
+        @Param("lastId") long lastId, @Param("limit") int limit);
 
     // Query to find users whose account expiration date is less than the current date
     @Query(value = """
@@ -32,11 +43,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
         users
     where
         is_account_non_expired
-        and account_expiration_date is not null
-        and account_expiration_date < NOW()
-        and lower(username) <> 'superadmin' 
+        and account_expiration_date < :now
+        and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findAccountExpirationDateLessThanNow();
+    List<Long> findAccountExpirationDateLessThan(@Param("now") Instant now, @Param("lastId") long lastId, @Param("limit") int limit);
 
     // Query to find users whose credentials expiration date is less than the current date
     @Query(value = """
@@ -46,38 +60,91 @@ public interface UserRepository extends JpaRepository<User, Long> {
         users
     where
         is_credentials_non_expired
-        and credentials_expiration_date is not null
-        and credentials_expiration_date < NOW()
+        and credentials_expiration_date < :now
         and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findCredentialsExpirationDateLessThanNow();
+    List<Long> findCredentialsExpirationDateLessThan(@Param("now") Instant now, @Param("lastId") long lastId, @Param("limit") int limit);
 
 
-    // Query to find users whose accounts have expired
+    // Query to find users whose account expiration date has passed within the delta window [since, now), used by the incremental run
     @Query(value = """
     select
         id
     from
         users
     where
-        is_account_non_expired = false
+        is_account_non_expired
+        and account_expiration_date >= :since
+        and account_expiration_date < :now
         and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findExpiredAccount();
+    List<Long> findAccountExpirationDateBetween(@Param("since") Instant since, @Param("now") Instant now,
+        @Param("lastId") long lastId, @Param("limit") int limit);
 
-    // Query to find users whose credentials have expired
+    // Query to find users whose credentials expiration date has passed within the delta window [since, now), used by the incremental run
     @Query(value = """
     select
         id
     from
         users
+    where
+        is_credentials_non_expired
+        and credentials_expiration_date >= :since
+        and credentials_expiration_date < :now
+        and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
+    """, nativeQuery = true)
+    List<Long> findCredentialsExpirationDateBetween(@Param("since") Instant since, @Param("now") Instant now,
+        @Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to find the contact details of users whose accounts have expired
+    @Query(value = """
+    select
+        id,
+        email,
+        username as userName
+    from
+        users
+    where
+        is_account_non_expired = false
+        and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
+    """, nativeQuery = true)
+    List<UserContact> findExpiredAccount(@Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to find the contact details of users whose credentials have expired
+    @Query(value = """
+    select
+        id,
+        email,
+        username as userName
+    from
+        users
     where
         is_credentials_non_expired = false
         and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findExpiredCredentials();
+    List<UserContact> findExpiredCredentials(@Param("lastId") long lastId, @Param("limit") int limit);
 
-    // Query to find users whose accounts have expired and are older than the specified number of days
+    // Query to find users whose accounts have expired before the retention cutoff and who are not deleted yet
     @Query(value = """
     select
         id
@@ -85,12 +152,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
         users
     where
         is_account_non_expired = false
-        and EXTRACT(DAY FROM (NOW() - account_expiration_date)) > :expiredAccountRetentionDays
+        and account_expiration_date <= :expirationCutoff
+        and is_deleted = false
         and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
     """, nativeQuery = true)
-    List<Long> findUsersWithExpiredAccountsOlderThan(@Param("expiredAccountRetentionDays") int expiredAccountRetentionDays);
+    List<Long> findUsersWithAccountsExpiredBefore(@Param("expirationCutoff") Instant expirationCutoff,
+        @Param("lastId") long lastId, @Param("limit") int limit);
 
-    // Query to find users whose credentials have expired and are older than the specified number of days
+    // Query to find users whose credentials have expired before the retention cutoff and who are not deleted yet
     @Query(value = """
     select
         id
@@ -98,8 +171,245 @@ public interface UserRepository extends JpaRepository<User, Long> {
         users
     where
         is_credentials_non_expired = false
-        and EXTRACT(DAY FROM (NOW() - credentials_expiration_date)) > :expiredCredentialsRetentionDays
+        and credentials_expiration_date <= :expirationCutoff
+        and is_deleted = false
+        and lower(username) <> 'superadmin'
+        and id > :lastId
+    order by
+        id
+    limit :limit
+    """, nativeQuery = true)
+    List<Long> findUsersWithCredentialsExpiredBefore(@Param("expirationCutoff") Instant expirationCutoff,
+        @Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to read the lifecycle state of the users, used by the lifecycle pass to evaluate every transition in a single scan
+    // (JPQL, so the timestamps are projected as Instant whatever the JDBC driver returns)
+    @Query(value = """
+    select
+        u.id as id,
+        u.email as email,
+        u.userName as userName,
+        u.lastLogin as lastLogin,
+        u.accountExpirationDate as accountExpirationDate,
+        u.credentialsExpirationDate as credentialsExpirationDate,
+        u.isAccountNonExpired as accountNonExpired,
+        u.isCredentialsNonExpired as credentialsNonExpired,
+        u.isDeleted as deleted
+    from
+        User u
+    where
+        lower(u.userName) <> 'superadmin'
+        and u.id > :lastId
+    order by
+        u.id
+    limit :limit
+    """)
+    List<UserLifecycleState> findLifecycleStates(@Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to find the active accounts expiring before the given time, used to load the ExpirationIndex
+    @Query(value = """
+    select
+        u.id as id,
+        u.accountExpirationDate as expirationDate
+    from
+        User u
+    where
+        u.isAccountNonExpired = true
+        and u.accountExpirationDate < :until
+        and lower(u.userName) <> 'superadmin'
+        and u.id > :lastId
+    order by
+        u.id
+    limit :limit
+    """)
+    List<UserExpiration> findAccountExpirationsBefore(@Param("until") Instant until, @Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to find the active credentials expiring before the given time, used to load the ExpirationIndex
+    @Query(value = """
+    select
+        u.id as id,
+        u.credentialsExpirationDate as expirationDate
+    from
+        User u
+    where
+        u.isCredentialsNonExpired = true
+        and u.credentialsExpirationDate < :until
+        and lower(u.userName) <> 'superadmin'
+        and u.id > :lastId
+    order by
+        u.id
+    limit :limit
+    """)
+    List<UserExpiration> findCredentialsExpirationsBefore(@Param("until") Instant until, @Param("lastId") long lastId, @Param("limit") int limit);
+
+    // Query to find the lowest user id, used as the lower bound when updating users in id-range chunks
+    @Query(value = "select coalesce(min(id), 0) from users", nativeQuery = true)
+    long findMinId();
+
+    // Query to find the highest user id, used as the upper bound when updating users in id-range chunks
+    @Query(value = "select coalesce(max(id), 0) from users", nativeQuery = true)
+    long findMaxId();
+
+    // Set-based update: set the account expiration date of the users who have not logged in since the cutoff and whose id is in (fromId, toId]
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        account_expiration_date = :now,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id > :fromId
+        and id <= :toId
+        and last_login <= :lastLoginCutoff
+        and is_account_non_expired
         and lower(username) <> 'superadmin'
     """, nativeQuery = true)
-    List<Long> findUsersWithExpiredCredentialsOlderThan(@Param("expiredCredentialsRetentionDays") int expiredCredentialsRetentionDays);
+    int setAccountExpirationDateOfInactiveUsers(@Param("now") Instant now, @Param("lastLoginCutoff") Instant lastLoginCutoff,
+        @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Set-based update: expire the accounts whose expiration date has passed and whose id is in (fromId, toId]
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_account_non_expired = false,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id > :fromId
+        and id <= :toId
+        and is_account_non_expired
+        and account_expiration_date < :now
+        and lower(username) <> 'superadmin'
+    """, nativeQuery = true)
+    int setAccountsToExpired(@Param("now") Instant now, @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Set-based update: expire the credentials whose expiration date has passed and whose id is in (fromId, toId]
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_credentials_non_expired = false,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id > :fromId
+        and id <= :toId
+        and is_credentials_non_expired
+        and credentials_expiration_date < :now
+        and lower(username) <> 'superadmin'
+    """, nativeQuery = true)
+    int setCredentialsToExpired(@Param("now") Instant now, @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Set-based update: delete the users whose accounts have expired before the retention cutoff and whose id is in (fromId, toId].
+    // A user deleted already keeps its updated_date, which the purge counts the retention of the deleted users from.
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_deleted = true,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id > :fromId
+        and id <= :toId
+        and is_account_non_expired = false
+        and account_expiration_date <= :expirationCutoff
+        and is_deleted = false
+        and lower(username) <> 'superadmin'
+    """, nativeQuery = true)
+    int deleteUsersWithAccountsExpiredBefore(@Param("now") Instant now, @Param("expirationCutoff") Instant expirationCutoff,
+        @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Set-based update: delete the users whose credentials have expired before the retention cutoff and whose id is in (fromId, toId].
+    // A user deleted already keeps its updated_date, which the purge counts the retention of the deleted users from.
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_deleted = true,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id > :fromId
+        and id <= :toId
+        and is_credentials_non_expired = false
+        and credentials_expiration_date <= :expirationCutoff
+        and is_deleted = false
+        and lower(username) <> 'superadmin'
+    """, nativeQuery = true)
+    int deleteUsersWithCredentialsExpiredBefore(@Param("now") Instant now, @Param("expirationCutoff") Instant expirationCutoff,
+        @Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Hard-delete the listed users that are still soft-deleted before the retention cutoff, used once they have been archived
+    @Modifying
+    @Query(value = """
+    delete from users
+    where
+        id in (:userIds)
+        and is_deleted = true
+        and updated_date <= :deletedCutoff
+    """, nativeQuery = true)
+    int deleteArchivedUsers(@Param("deletedCutoff") Instant deletedCutoff, @Param("userIds") List<Long> userIds);
+
+    // Update by ids, used by the lifecycle pass: set the account expiration date of the listed users that are still active
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        account_expiration_date = :now,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id in (:ids)
+        and is_account_non_expired
+    """, nativeQuery = true)
+    int setAccountExpirationDateByIds(@Param("now") Instant now, @Param("ids") List<Long> ids);
+
+    // Update by ids, used by the lifecycle pass, the incremental run and the ExpirationIndex:
+    // expire the accounts of the listed users whose expiration date has passed
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_account_non_expired = false,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id in (:ids)
+        and is_account_non_expired
+        and account_expiration_date <= :now
+    """, nativeQuery = true)
+    int setAccountsToExpiredByIds(@Param("now") Instant now, @Param("ids") List<Long> ids);
+
+    // Update by ids, used by the lifecycle pass, the incremental run and the ExpirationIndex:
+    // expire the credentials of the listed users whose expiration date has passed
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_credentials_non_expired = false,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id in (:ids)
+        and is_credentials_non_expired
+        and credentials_expiration_date <= :now
+    """, nativeQuery = true)
+    int setCredentialsToExpiredByIds(@Param("now") Instant now, @Param("ids") List<Long> ids);
+
+    // Update by ids, used by the lifecycle pass: delete the listed users
+    @Modifying
+    @Query(value = """
+    update users
+    set
+        is_deleted = true,
+        updated_by = 'System',
+        updated_date = :now
+    where
+        id in (:ids)
+        and is_deleted = false
+    """, nativeQuery = true)
+    int deleteUsersByIds(@Param("now") Instant now, @Param("ids") List<Long> ids);
 }
@@ -0,0 +1,34 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/*
+*   Actuator endpoint of the ShutdownDrain, exposed over HTTP once "drain" is added to management.endpoints.web.exposure.include:
+*   - GET  /actuator/drain : whether the scheduler is draining and the jobs still running
+*   - POST /actuator/drain : start the drain and return once the running jobs have stopped or the drain timeout has passed.
+*                            Meant for the preStop hook of a rolling deploy, the drain cannot be undone without a restart:
+*                            the jobs endpoint rejects every trigger and any job still started stops at its first checkpoint.
+*/
+@Component
+@Endpoint(id = "drain")
+public class DrainEndpoint {
+
+    private final ShutdownDrain shutdownDrain;
+
+    public DrainEndpoint(ShutdownDrain shutdownDrain) {
+        this.shutdownDrain = shutdownDrain;
+    }
+
+    @ReadOperation
+    public DrainStatus status() {
+        return shutdownDrain.status();
+    }
+
+    @WriteOperation
+    public DrainStatus drain() {
+        return shutdownDrain.drain();
+    }
+}
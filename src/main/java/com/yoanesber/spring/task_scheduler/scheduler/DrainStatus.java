@@ -0,0 +1,7 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.util.List;
+
+// Drain state of the scheduler as reported by the drain endpoint, runningJobs are the jobs with a run still in progress
+public record DrainStatus(boolean draining, List<String> runningJobs) {
+}
@@ -0,0 +1,29 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+// Class of a job, every class runs on its own executor, sized with scheduler.executors.<property key>.*,
+// so a long maintenance run cannot hold the threads the state transitions need
+public enum JobClass {
+    // Latency-sensitive account and credentials state transitions
+    STATE_TRANSITION("state-transition", "stateTransitionTaskExecutor"),
+    // Bulk maintenance, e.g. the monthly cleanups
+    MAINTENANCE("maintenance", "maintenanceTaskExecutor"),
+    // I/O-bound notification jobs
+    NOTIFICATION("notification", "notificationTaskExecutor");
+
+    private final String propertyKey;
+
+    private final String executorName;
+
+    JobClass(String propertyKey, String executorName) {
+        this.propertyKey = propertyKey;
+        this.executorName = executorName;
+    }
+
+    public String getPropertyKey() {
+        return propertyKey;
+    }
+
+    public String getExecutorName() {
+        return executorName;
+    }
+}
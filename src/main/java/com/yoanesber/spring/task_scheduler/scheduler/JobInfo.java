@@ -0,0 +1,8 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Instant;
+
+// State of a registered job as reported by the jobs endpoint, nextExecution is null while the job is paused or disabled
+public record JobInfo(String name, JobClass jobClass, String schedule, JobPolicy policy, boolean paused, Instant nextExecution,
+    int runningRuns, int queuedRuns) {
+}
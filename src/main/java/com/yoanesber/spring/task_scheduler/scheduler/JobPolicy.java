@@ -0,0 +1,26 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+// Policies of a registered job: what to do when it fires while a run is still in progress, and when its executions were missed
+public record JobPolicy(ConcurrencyPolicy concurrencyPolicy, MisfirePolicy misfirePolicy) {
+
+    public static final JobPolicy DEFAULT = new JobPolicy(ConcurrencyPolicy.SKIP_IF_RUNNING, MisfirePolicy.SKIP);
+
+    public enum ConcurrencyPolicy {
+        // Drop the execution, the run in progress covers it
+        SKIP_IF_RUNNING,
+        // Keep at most one execution waiting, it starts as soon as the run in progress has completed
+        QUEUE_ONE,
+        // Start the execution next to the run in progress, only for jobs whose runs do not compete for the same rows
+        ALLOW_PARALLEL
+    }
+
+    // Applied once on startup to the executions missed while the application was down
+    public enum MisfirePolicy {
+        // Run the job once right away, however many executions were missed
+        FIRE_ONCE_NOW,
+        // Wait for the next execution
+        SKIP,
+        // Run the job once for every missed execution, one run after the other, up to scheduler.jobs.max-catch-up-runs runs
+        CATCH_UP
+    }
+}
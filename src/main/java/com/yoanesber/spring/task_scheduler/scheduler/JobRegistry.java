@@ -0,0 +1,503 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.metrics.JobMetrics;
+import com.yoanesber.spring.task_scheduler.service.JobCheckpointService;
+import com.yoanesber.spring.task_scheduler.service.JobTriggerService;
+
+/*
+*   Registry of the scheduled jobs. Every job is scheduled with ThreadPoolTaskScheduler.schedule(Runnable, Trigger) and its
+*   ScheduledFuture is kept, so a job can be paused, resumed, triggered now or rescheduled (cron or fixed rate) at runtime.
+*   - The ThreadPoolTaskScheduler only fires the triggers, the job bodies run on the executor of their JobClass.
+*     An execution rejected by a full executor is skipped.
+*   - An execution that fires while a run of the same job is in progress is skipped, queued or started in parallel
+*     according to the concurrency policy of the job. Every run gets a run id, put in the MDC under "runId" while it runs.
+*   - The time every job last fired is stored in the job_trigger table. On startup, the executions missed since then
+*     are handled according to the misfire policy of the job.
+*   - A resumable job whose run failed or was stopped leaves checkpoints behind (job_checkpoint). A run is started to resume it
+*     after scheduler.checkpoint.retry-delay-seconds (at most scheduler.checkpoint.max-retries times in a row) and on startup,
+*     instead of waiting for the next execution of the job.
+*   - Pausing or rescheduling a job cancels its next execution only, a run in progress is not interrupted.
+*   - Once the registry drains for a shutdown, no run is started anymore: the schedules are cancelled, the queued runs are dropped
+*     and a manual trigger is rejected. The schedules that fire meanwhile are not recorded, so the next startup sees them as missed.
+*   - Changes are kept in memory, a restart schedules the jobs from their properties again.
+*/
+@Component
+public class JobRegistry {
+
+    public static final String RUN_ID = "runId";
+
+    // Run of a job on the current executor thread
+    private static final ThreadLocal<JobRun> CURRENT_RUN = new ThreadLocal<>();
+
+    private final ThreadPoolTaskScheduler threadPoolTaskScheduler;
+
+    private final Map<JobClass, ThreadPoolTaskExecutor> executors = new EnumMap<>(JobClass.class);
+
+    private final JobMetrics jobMetrics;
+
+    private final JobTriggerService jobTriggerService;
+
+    private final JobCheckpointService jobCheckpointService;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final Map<String, RegisteredJob> jobs = new ConcurrentHashMap<>();
+
+    private volatile boolean draining;
+
+    // Maximum number of runs started on startup for the missed executions of a CATCH_UP job
+    @Value("${scheduler.jobs.max-catch-up-runs:3}")
+    private int maxCatchUpRuns;
+
+    // Delay before a run is started to resume the unfinished run left by a failed or stopped run
+    @Value("${scheduler.checkpoint.retry-delay-seconds:300}")
+    private long retryDelaySeconds;
+
+    // Number of retries in a row, the unfinished run is then left to the next execution of the job
+    @Value("${scheduler.checkpoint.max-retries:3}")
+    private int maxRetries;
+
+    public JobRegistry(@Qualifier("threadPoolTaskScheduler") ThreadPoolTaskScheduler threadPoolTaskScheduler,
+        @Qualifier("stateTransitionTaskExecutor") ThreadPoolTaskExecutor stateTransitionTaskExecutor,
+        @Qualifier("maintenanceTaskExecutor") ThreadPoolTaskExecutor maintenanceTaskExecutor,
+        @Qualifier("notificationTaskExecutor") ThreadPoolTaskExecutor notificationTaskExecutor,
+        JobMetrics jobMetrics, JobTriggerService jobTriggerService, JobCheckpointService jobCheckpointService, Clock clock) {
+        this.threadPoolTaskScheduler = threadPoolTaskScheduler;
+        this.jobMetrics = jobMetrics;
+        this.jobTriggerService = jobTriggerService;
+        this.jobCheckpointService = jobCheckpointService;
+        this.clock = clock;
+
+        executors.put(JobClass.STATE_TRANSITION, stateTransitionTaskExecutor);
+        executors.put(JobClass.MAINTENANCE, maintenanceTaskExecutor);
+        executors.put(JobClass.NOTIFICATION, notificationTaskExecutor);
+        executors.forEach(jobMetrics::bindExecutor);
+    }
+
+    // Register a job and schedule it unless it is paused or its schedule is disabled
+    public JobInfo register(String jobName, JobClass jobClass, JobSchedule schedule, JobPolicy policy, boolean paused, Runnable job) {
+        RegisteredJob registeredJob = new RegisteredJob(jobName, jobClass, policy, job);
+        if (jobs.putIfAbsent(jobName, registeredJob) != null) {
+            throw new IllegalArgumentException("Job " + jobName + " is already registered");
+        }
+
+        synchronized (registeredJob) {
+            registeredJob.schedule = schedule;
+            registeredJob.paused = paused;
+            schedule(registeredJob);
+            return registeredJob.toInfo();
+        }
+    }
+
+    // Cancel the next executions of a job until it is resumed
+    public JobInfo pause(String jobName) {
+        RegisteredJob registeredJob = get(jobName);
+        synchronized (registeredJob) {
+            registeredJob.paused = true;
+            cancel(registeredJob);
+            logger.info("Job {} has been paused", jobName);
+            return registeredJob.toInfo();
+        }
+    }
+
+    public JobInfo resume(String jobName) {
+        RegisteredJob registeredJob = get(jobName);
+        synchronized (registeredJob) {
+            if (registeredJob.paused) {
+                registeredJob.paused = false;
+                schedule(registeredJob);
+                logger.info("Job {} has been resumed with {}", jobName, registeredJob.schedule);
+            }
+            return registeredJob.toInfo();
+        }
+    }
+
+    // Run a job now on the executor of its class, even if it is paused, its schedule is left unchanged.
+    // The concurrency policy of the job applies as for a scheduled execution. Rejected once the registry drains.
+    public JobInfo trigger(String jobName) {
+        RegisteredJob registeredJob = get(jobName);
+        if (draining) {
+            throw new IllegalStateException("Job " + jobName + " cannot be triggered, the application is shutting down");
+        }
+
+        logger.info("Job {} has been triggered manually", jobName);
+        dispatch(registeredJob);
+
+        synchronized (registeredJob) {
+            return registeredJob.toInfo();
+        }
+    }
+
+    // Replace the schedule of a job, a paused job keeps its new schedule until it is resumed
+    public JobInfo reschedule(String jobName, JobSchedule schedule) {
+        RegisteredJob registeredJob = get(jobName);
+        synchronized (registeredJob) {
+            cancel(registeredJob);
+            registeredJob.schedule = schedule;
+            schedule(registeredJob);
+            logger.info("Job {} has been rescheduled with {}", jobName, schedule);
+            return registeredJob.toInfo();
+        }
+    }
+
+    // Stop starting runs, the runs in progress are left to complete or stop on their own
+    public void drain() {
+        draining = true;
+        jobs.values().forEach(registeredJob -> {
+            synchronized (registeredJob) {
+                cancel(registeredJob);
+                if (registeredJob.queuedRuns > 0) {
+                    logger.info("Job {} is draining, {} queued runs have been dropped", registeredJob.name, registeredJob.queuedRuns);
+                    registeredJob.queuedRuns = 0;
+                    registeredJob.queuedScheduledStart = null;
+                }
+            }
+        });
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    // Run id and scheduled start of the job running on the current thread, empty outside of a run started by the registry
+    public static Optional<JobRun> currentRun() {
+        return Optional.ofNullable(CURRENT_RUN.get());
+    }
+
+    public Optional<JobInfo> getJob(String jobName) {
+        RegisteredJob registeredJob = jobs.get(jobName);
+        if (registeredJob == null) {
+            return Optional.empty();
+        }
+
+        synchronized (registeredJob) {
+            return Optional.of(registeredJob.toInfo());
+        }
+    }
+
+    public List<JobInfo> getJobs() {
+        return jobs.keySet().stream()
+            .sorted(Comparator.naturalOrder())
+            .map(this::getJob)
+            .flatMap(Optional::stream)
+            .toList();
+    }
+
+    // Current schedule of a job, also while it is paused
+    public Optional<JobSchedule> getSchedule(String jobName) {
+        RegisteredJob registeredJob = jobs.get(jobName);
+        if (registeredJob == null) {
+            return Optional.empty();
+        }
+
+        synchronized (registeredJob) {
+            return Optional.of(registeredJob.schedule);
+        }
+    }
+
+    // Handle the executions missed while the application was down and resume the runs left unfinished, once it is ready
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverMisfires() {
+        if (draining) {
+            return;
+        }
+        jobs.values().forEach(registeredJob -> {
+            // A run started for the missed executions resumes the unfinished run as well
+            if (!recoverMisfires(registeredJob)) {
+                recoverUnfinishedRun(registeredJob);
+            }
+        });
+    }
+
+    // Start the runs of the missed executions according to the misfire policy, returns true if a run has been started
+    private boolean recoverMisfires(RegisteredJob registeredJob) {
+        JobSchedule schedule;
+        synchronized (registeredJob) {
+            if (registeredJob.paused || registeredJob.schedule.isDisabled()
+                || registeredJob.policy.misfirePolicy() == JobPolicy.MisfirePolicy.SKIP) {
+                return false;
+            }
+            schedule = registeredJob.schedule;
+        }
+
+        Instant lastFired = jobTriggerService.findLastFired(registeredJob.name).orElse(null);
+        if (lastFired == null) {
+            return false;
+        }
+
+        int missedExecutions = countMissedExecutions(schedule, lastFired, clock.instant());
+        if (missedExecutions == 0) {
+            return false;
+        }
+
+        int runs = registeredJob.policy.misfirePolicy() == JobPolicy.MisfirePolicy.CATCH_UP ? missedExecutions : 1;
+        logger.warn("Job {} missed {}{} executions since {}, starting {} runs", registeredJob.name, missedExecutions,
+            missedExecutions > maxCatchUpRuns ? "+" : "", lastFired, runs);
+
+        jobTriggerService.recordFired(registeredJob.name, clock.instant());
+        synchronized (registeredJob) {
+            // The runs are started one after the other, the next one once the previous one has completed
+            registeredJob.queuedRuns += runs - 1;
+            registeredJob.runningRuns++;
+        }
+        start(registeredJob, clock.instant());
+        return true;
+    }
+
+    // Start a run to resume the unfinished run of a scheduled job, unless a run of the job is already in progress
+    private void recoverUnfinishedRun(RegisteredJob registeredJob) {
+        synchronized (registeredJob) {
+            if (draining || registeredJob.paused || registeredJob.schedule.isDisabled() || registeredJob.runningRuns > 0) {
+                return;
+            }
+        }
+        if (!jobCheckpointService.hasUnfinishedRun(registeredJob.name)) {
+            return;
+        }
+
+        logger.warn("Job {} has an unfinished run, starting a run to resume it", registeredJob.name);
+        dispatch(registeredJob);
+    }
+
+    // Schedule a retry when the run left an unfinished run behind, i.e. it failed or was stopped before all its checkpoints completed.
+    // Once the application drains, the unfinished run is resumed on the next startup.
+    private void retryUnfinishedRun(RegisteredJob registeredJob) {
+        synchronized (registeredJob) {
+            // A run still in progress (e.g. a queued run) checks the unfinished run once it has completed
+            if (draining || registeredJob.runningRuns > 0) {
+                return;
+            }
+        }
+        boolean unfinished = jobCheckpointService.hasUnfinishedRun(registeredJob.name);
+
+        int retry;
+        synchronized (registeredJob) {
+            if (!unfinished) {
+                registeredJob.retries = 0;
+                return;
+            }
+            if (registeredJob.retries >= maxRetries) {
+                logger.warn("Job {} still has an unfinished run after {} retries, it is left to the next execution", registeredJob.name, maxRetries);
+                return;
+            }
+            retry = ++registeredJob.retries;
+        }
+
+        logger.warn("Job {} left an unfinished run, resuming it in {} s (retry {} of {})", registeredJob.name, retryDelaySeconds, retry, maxRetries);
+        threadPoolTaskScheduler.schedule(() -> recoverUnfinishedRun(registeredJob),
+            threadPoolTaskScheduler.getClock().instant().plusSeconds(retryDelaySeconds));
+    }
+
+    // Number of executions of the schedule after lastFired and not after now, counted up to maxCatchUpRuns
+    private int countMissedExecutions(JobSchedule schedule, Instant lastFired, Instant now) {
+        int missedExecutions = 0;
+        ZonedDateTime next = ZonedDateTime.ofInstant(lastFired, ZoneId.systemDefault());
+
+        while (missedExecutions < maxCatchUpRuns) {
+            next = schedule.next(next);
+            if (next == null || next.toInstant().isAfter(now)) {
+                break;
+            }
+            missedExecutions++;
+        }
+
+        return missedExecutions;
+    }
+
+    private RegisteredJob get(String jobName) {
+        RegisteredJob registeredJob = jobs.get(jobName);
+        if (registeredJob == null) {
+            throw new IllegalArgumentException("Unknown job " + jobName);
+        }
+
+        return registeredJob;
+    }
+
+    private void schedule(RegisteredJob registeredJob) {
+        if (registeredJob.paused || registeredJob.schedule.isDisabled() || draining) {
+            return;
+        }
+
+        registeredJob.future = threadPoolTaskScheduler.schedule(() -> fire(registeredJob), registeredJob.schedule.toTrigger());
+    }
+
+    private void cancel(RegisteredJob registeredJob) {
+        if (registeredJob.future != null) {
+            registeredJob.future.cancel(false);
+            registeredJob.future = null;
+        }
+    }
+
+    // Called on a ThreadPoolTaskScheduler thread when the schedule of the job fires
+    private void fire(RegisteredJob registeredJob) {
+        if (draining) {
+            return;
+        }
+        jobTriggerService.recordFired(registeredJob.name, clock.instant());
+        dispatch(registeredJob);
+    }
+
+    // Start a run of the job, or skip or queue it if a run is already in progress
+    private void dispatch(RegisteredJob registeredJob) {
+        synchronized (registeredJob) {
+            if (draining) {
+                jobMetrics.recordSkip(registeredJob.name, "draining");
+                logger.info("Job {} skipped, the application is shutting down", registeredJob.name);
+                return;
+            }
+            if (registeredJob.runningRuns > 0) {
+                switch (registeredJob.policy.concurrencyPolicy()) {
+                    case SKIP_IF_RUNNING -> {
+                        skip(registeredJob, "running");
+                        return;
+                    }
+                    case QUEUE_ONE -> {
+                        if (registeredJob.queuedRuns > 0) {
+                            skip(registeredJob, "queued");
+                        } else {
+                            registeredJob.queuedRuns = 1;
+                            registeredJob.queuedScheduledStart = clock.instant();
+                            logger.info("Job {} is still running, the execution has been queued", registeredJob.name);
+                        }
+                        return;
+                    }
+                    case ALLOW_PARALLEL -> {
+                        // Started next to the run in progress
+                    }
+                }
+            }
+            registeredJob.runningRuns++;
+        }
+
+        start(registeredJob, clock.instant());
+    }
+
+    private void skip(RegisteredJob registeredJob, String reason) {
+        jobMetrics.recordSkip(registeredJob.name, reason);
+        logger.info("Job {} skipped, a run is already {}", registeredJob.name, reason);
+    }
+
+    // Hand the run over to the executor of the job class, the run has already been counted in runningRuns.
+    // scheduledStart is the time the execution fired or was triggered, the start lag of the run is measured from it.
+    private void start(RegisteredJob registeredJob, Instant scheduledStart) {
+        JobRun jobRun = new JobRun(UUID.randomUUID().toString(), scheduledStart);
+        try {
+            executors.get(registeredJob.jobClass).execute(() -> run(registeredJob, jobRun));
+        } catch (TaskRejectedException e) {
+            jobMetrics.recordSkip(registeredJob.name, "rejected");
+            logger.error("Job {} has been rejected by the {} executor with message: {}", registeredJob.name, registeredJob.jobClass, e.getMessage());
+            completed(registeredJob);
+        }
+    }
+
+    private void run(RegisteredJob registeredJob, JobRun jobRun) {
+        MDC.put(RUN_ID, jobRun.runId());
+        CURRENT_RUN.set(jobRun);
+        try {
+            logger.debug("Job {} run {} started", registeredJob.name, jobRun.runId());
+            registeredJob.job.run();
+        } catch (Exception e) {
+            logger.error("Exception in run {} of {} with message: {}", jobRun.runId(), registeredJob.name, e.getMessage());
+        } finally {
+            CURRENT_RUN.remove();
+            MDC.remove(RUN_ID);
+            completed(registeredJob);
+        }
+
+        try {
+            retryUnfinishedRun(registeredJob);
+        } catch (Exception e) {
+            logger.error("Exception while checking the unfinished run of {} with message: {}", registeredJob.name, e.getMessage());
+        }
+    }
+
+    // Start the queued run, if any, once a run has completed
+    private void completed(RegisteredJob registeredJob) {
+        Instant scheduledStart;
+        synchronized (registeredJob) {
+            registeredJob.runningRuns--;
+            if (registeredJob.queuedRuns == 0 || draining) {
+                registeredJob.queuedRuns = 0;
+                registeredJob.queuedScheduledStart = null;
+                return;
+            }
+            registeredJob.queuedRuns--;
+            registeredJob.runningRuns++;
+
+            // A QUEUE_ONE execution waited since it fired, a catch-up run starts now
+            scheduledStart = registeredJob.queuedScheduledStart != null ? registeredJob.queuedScheduledStart : clock.instant();
+            registeredJob.queuedScheduledStart = null;
+        }
+
+        start(registeredJob, scheduledStart);
+    }
+
+    private final class RegisteredJob {
+
+        private final String name;
+
+        private final JobClass jobClass;
+
+        private final JobPolicy policy;
+
+        private final Runnable job;
+
+        private JobSchedule schedule;
+
+        private boolean paused;
+
+        private ScheduledFuture<?> future;
+
+        private int runningRuns;
+
+        private int queuedRuns;
+
+        private Instant queuedScheduledStart;
+
+        // Retries in a row of the unfinished run of the job
+        private int retries;
+
+        private RegisteredJob(String name, JobClass jobClass, JobPolicy policy, Runnable job) {
+            this.name = name;
+            this.jobClass = jobClass;
+            this.policy = policy;
+            this.job = job;
+        }
+
+        private JobInfo toInfo() {
+            Instant nextExecution = future == null || future.isCancelled()
+                ? null
+                : clock.instant().plusMillis(future.getDelay(TimeUnit.MILLISECONDS));
+
+            return new JobInfo(name, jobClass, schedule.toString(), policy, paused, nextExecution, runningRuns, queuedRuns);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Instant;
+
+// Run of a job on the current thread: its run id and the time its execution fired or was triggered (scheduled start)
+public record JobRun(String runId, Instant scheduledStart) {
+}
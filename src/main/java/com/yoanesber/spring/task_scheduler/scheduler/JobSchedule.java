@@ -0,0 +1,76 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+// Schedule of a registered job, either a cron expression or a fixed rate. A cron of "-" (or no cron) disables the job.
+public record JobSchedule(String cron, Duration fixedRate) {
+
+    public JobSchedule {
+        if (fixedRate != null && (fixedRate.isZero() || fixedRate.isNegative())) {
+            throw new IllegalArgumentException("The fixed rate must be positive, got " + fixedRate);
+        }
+        if (fixedRate == null && !isDisabledCron(cron) && !CronExpression.isValidExpression(cron)) {
+            throw new IllegalArgumentException("Invalid cron expression: " + cron);
+        }
+    }
+
+    public static JobSchedule cron(String cron) {
+        return new JobSchedule(cron, null);
+    }
+
+    public static JobSchedule fixedRate(Duration fixedRate) {
+        return new JobSchedule(null, fixedRate);
+    }
+
+    public boolean isDisabled() {
+        return fixedRate == null && isDisabledCron(cron);
+    }
+
+    public boolean isCron() {
+        return fixedRate == null && !isDisabled();
+    }
+
+    // Trigger the ThreadPoolTaskScheduler fires the job with, a fixed-rate job first fires one period after it is scheduled
+    public Trigger toTrigger() {
+        if (isDisabled()) {
+            throw new IllegalStateException("A disabled schedule has no trigger");
+        }
+        if (fixedRate == null) {
+            return new CronTrigger(cron);
+        }
+
+        PeriodicTrigger trigger = new PeriodicTrigger(fixedRate);
+        trigger.setFixedRate(true);
+        trigger.setInitialDelay(fixedRate);
+        return trigger;
+    }
+
+    // First time the schedule fires after the given time, null if it is disabled
+    public ZonedDateTime next(ZonedDateTime after) {
+        if (isDisabled()) {
+            return null;
+        }
+
+        return fixedRate == null ? CronExpression.parse(cron).next(after) : after.plus(fixedRate);
+    }
+
+    @Override
+    public String toString() {
+        if (isDisabled()) {
+            return Scheduled.CRON_DISABLED;
+        }
+
+        return fixedRate == null ? "cron " + cron : "fixed rate " + fixedRate;
+    }
+
+    private static boolean isDisabledCron(String cron) {
+        return cron == null || cron.isBlank() || Scheduled.CRON_DISABLED.equals(cron);
+    }
+}
@@ -0,0 +1,70 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/*
+*   Actuator endpoint of the JobRegistry, exposed over HTTP once "jobs" is added to management.endpoints.web.exposure.include:
+*   - GET  /actuator/jobs         : all registered jobs
+*   - GET  /actuator/jobs/{name}  : a single job
+*   - POST /actuator/jobs/{name}  : {"action": "pause" | "resume" | "trigger"} or {"action": "reschedule", "cron": "..."}
+*                                   or {"action": "reschedule", "fixedRateSeconds": ...}
+*                                   A trigger is rejected once the scheduler drains for a shutdown (see DrainEndpoint).
+*/
+@Component
+@Endpoint(id = "jobs")
+public class JobsEndpoint {
+
+    public enum Action {
+        PAUSE,
+        RESUME,
+        TRIGGER,
+        RESCHEDULE
+    }
+
+    private final JobRegistry jobRegistry;
+
+    public JobsEndpoint(JobRegistry jobRegistry) {
+        this.jobRegistry = jobRegistry;
+    }
+
+    @ReadOperation
+    public List<JobInfo> jobs() {
+        return jobRegistry.getJobs();
+    }
+
+    @ReadOperation
+    public JobInfo job(@Selector String name) {
+        return jobRegistry.getJob(name).orElse(null);
+    }
+
+    @WriteOperation
+    public JobInfo updateJob(@Selector String name, Action action, @Nullable String cron, @Nullable Long fixedRateSeconds) {
+        try {
+            return switch (action) {
+                case PAUSE -> jobRegistry.pause(name);
+                case RESUME -> jobRegistry.resume(name);
+                case TRIGGER -> jobRegistry.trigger(name);
+                case RESCHEDULE -> jobRegistry.reschedule(name, schedule(cron, fixedRateSeconds));
+            };
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    private static JobSchedule schedule(String cron, Long fixedRateSeconds) {
+        if ((cron == null) == (fixedRateSeconds == null)) {
+            throw new IllegalArgumentException("A reschedule needs either a cron or a fixedRateSeconds");
+        }
+
+        return cron != null ? JobSchedule.cron(cron) : JobSchedule.fixedRate(Duration.ofSeconds(fixedRateSeconds));
+    }
+}
@@ -0,0 +1,103 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.spring.task_scheduler.batch.JobGuard;
+
+/*
+*   Cooperative drain of the scheduled work before a shutdown, started by the drain endpoint (e.g. from a preStop hook) or at the latest
+*   when the application context is closed (SIGTERM), before the executors are shut down:
+*   1. The readiness state turns to REFUSING_TRAFFIC, so the instance leaves the load balancer while the runs complete.
+*   2. The JobRegistry starts no run anymore, the queued runs are dropped and a manual trigger is rejected.
+*   3. Every running job stops at its next checkpoint: the chunk in progress commits with its checkpoint, the next chunk is not started,
+*      the lease of the job is released and the run is journaled as STOPPED. A stopped cleanup leaves its job_checkpoint rows behind,
+*      so the JobRegistry resumes it on the next startup, here or on another node. The other jobs start over at their next execution
+*      and only match the rows that are left.
+*   4. The close waits at most scheduler.shutdown.drain-timeout-seconds for the runs to stop, then the executors get
+*      spring.task.scheduling.await-termination-seconds more. Together they must fit in the termination grace period of the platform.
+*/
+@Component
+public class ShutdownDrain {
+
+    static final String STOP_REASON = "application is shutting down";
+
+    private final ApplicationContext applicationContext;
+
+    private final JobRegistry jobRegistry;
+
+    private final JobGuard jobGuard;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.shutdown.drain-timeout-seconds:20}")
+    private long drainTimeoutSeconds;
+
+    public ShutdownDrain(ApplicationContext applicationContext, JobRegistry jobRegistry, JobGuard jobGuard) {
+        this.applicationContext = applicationContext;
+        this.jobRegistry = jobRegistry;
+        this.jobGuard = jobGuard;
+    }
+
+    // Start the drain once, then wait at most the drain timeout for the running jobs to stop
+    public DrainStatus drain() {
+        if (draining.compareAndSet(false, true)) {
+            AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+            jobRegistry.drain();
+            jobGuard.stopAll(STOP_REASON);
+            logger.info("Scheduler is draining, running jobs: {}", runningJobs());
+        }
+
+        return awaitDrained(Duration.ofSeconds(drainTimeoutSeconds));
+    }
+
+    public DrainStatus status() {
+        return new DrainStatus(draining.get(), runningJobs());
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed(ContextClosedEvent event) {
+        if (event.getApplicationContext() == applicationContext) {
+            DrainStatus status = drain();
+            if (!status.runningJobs().isEmpty()) {
+                logger.warn("Scheduler drain timed out after {} s, still running: {}", drainTimeoutSeconds, status.runningJobs());
+            }
+        }
+    }
+
+    private DrainStatus awaitDrained(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        List<String> runningJobs = runningJobs();
+        while (!runningJobs.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            runningJobs = runningJobs();
+        }
+
+        return new DrainStatus(draining.get(), runningJobs);
+    }
+
+    private List<String> runningJobs() {
+        return jobRegistry.getJobs().stream()
+            .filter(job -> job.runningRuns() > 0)
+            .map(JobInfo::name)
+            .toList();
+    }
+}
@@ -1,120 +1,276 @@
 package com.yoanesber.spring.task_scheduler.scheduler;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
+import com.yoanesber.spring.task_scheduler.batch.JobGuard;
+import com.yoanesber.spring.task_scheduler.batch.JobStoppedException;
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+import com.yoanesber.spring.task_scheduler.journal.JobJournal;
+import com.yoanesber.spring.task_scheduler.metrics.JobMetrics;
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+import com.yoanesber.spring.task_scheduler.service.JobLockService;
+import com.yoanesber.spring.task_scheduler.service.JobTriggerService;
+import com.yoanesber.spring.task_scheduler.service.LifecycleTransition;
 import com.yoanesber.spring.task_scheduler.service.UserService;
 
+import jakarta.annotation.PostConstruct;
+
 @Component
-@SuppressWarnings("unused")
 public class TaskScheduler {
 
-    private final ThreadPoolTaskScheduler threadPoolTaskScheduler;
+    // Cron property of every job, the jobs are registered in the JobRegistry with these crons
+    private static final Map<String, String> CRON_PROPERTIES = Map.of(
+        "setAccountExpirationDate", "scheduler.daily-task.set-account-expiration-date",
+        "setAccountsToExpired", "scheduler.daily-task.set-accounts-to-expired",
+        "setCredentialsToExpired", "scheduler.daily-task.set-credentials-to-expired",
+        "sendEmailToUsersWithExpiredAccounts", "scheduler.weekly-task.send-email-to-users-with-expired-accounts",
+        "sendEmailToUsersWithExpiredCredentials", "scheduler.weekly-task.send-email-to-users-with-expired-credentials",
+        "cleanUpExpiredAccounts", "scheduler.monthly-task.cleanup-expired-accounts",
+        "cleanUpExpiredCredentials", "scheduler.monthly-task.cleanup-expired-credentials",
+        "purgeDeletedUsers", "scheduler.monthly-task.purge-deleted-users");
+
+    private static final String LIFECYCLE_PASS = "lifecyclePass";
+
+    private static final String LIFECYCLE_PASS_CRON_PROPERTY = "scheduler.lifecycle-pass.cron";
+
+    private static final String LIFECYCLE_PASS_DEFAULT_CRON = "0 5 0 * * ?";
+
+    // Key of the job_trigger row holding the start of the previous successful lifecycle pass
+    private static final String PREVIOUS_LIFECYCLE_PASS = LIFECYCLE_PASS + "#previous-pass";
+
+    private final JobRegistry jobRegistry;
 
     private final UserService userService;
+
+    private final JobMetrics jobMetrics;
+
+    private final JobLockService jobLockService;
+
+    private final JobGuard jobGuard;
+
+    private final JobJournal jobJournal;
+
+    private final JobTriggerService jobTriggerService;
+
+    private final Environment environment;
+
+    private final Clock clock;
     
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    public TaskScheduler(@Qualifier("threadPoolTaskScheduler") ThreadPoolTaskScheduler threadPoolTaskScheduler,
-        UserService userService) {
-        this.threadPoolTaskScheduler = threadPoolTaskScheduler;
+    // If true, the lifecycle pass replaces the seven transition, email and cleanup jobs below: they are registered paused, but can still be triggered manually
+    @Value("${scheduler.lifecycle-pass.enabled:false}")
+    private boolean lifecyclePassEnabled;
+
+    // Policies of the jobs, each job can override them with scheduler.jobs.<job name>.concurrency-policy and .misfire-policy
+    @Value("${scheduler.jobs.concurrency-policy:SKIP_IF_RUNNING}")
+    private JobPolicy.ConcurrencyPolicy concurrencyPolicy;
+
+    @Value("${scheduler.jobs.misfire-policy:SKIP}")
+    private JobPolicy.MisfirePolicy misfirePolicy;
+
+    public TaskScheduler(JobRegistry jobRegistry, UserService userService, JobMetrics jobMetrics, JobLockService jobLockService,
+        JobGuard jobGuard, JobJournal jobJournal, JobTriggerService jobTriggerService, Environment environment, Clock clock) {
+        this.jobRegistry = jobRegistry;
         this.userService = userService;
+        this.jobMetrics = jobMetrics;
+        this.jobLockService = jobLockService;
+        this.jobGuard = jobGuard;
+        this.jobJournal = jobJournal;
+        this.jobTriggerService = jobTriggerService;
+        this.environment = environment;
+        this.clock = clock;
+    }
+
+    // Register every job with the cron of its property, the lifecycle pass is only registered when it is enabled
+    @PostConstruct
+    public void registerJobs() {
+        registerJob("setAccountExpirationDate", JobClass.STATE_TRANSITION, this::setAccountExpirationDate);
+        registerJob("setAccountsToExpired", JobClass.STATE_TRANSITION, this::setAccountsToExpired);
+        registerJob("setCredentialsToExpired", JobClass.STATE_TRANSITION, this::setCredentialsToExpired);
+        registerJob("sendEmailToUsersWithExpiredAccounts", JobClass.NOTIFICATION, this::sendEmailToUsersWithExpiredAccounts);
+        registerJob("sendEmailToUsersWithExpiredCredentials", JobClass.NOTIFICATION, this::sendEmailToUsersWithExpiredCredentials);
+        registerJob("cleanUpExpiredAccounts", JobClass.MAINTENANCE, this::cleanUpExpiredAccounts);
+        registerJob("cleanUpExpiredCredentials", JobClass.MAINTENANCE, this::cleanUpExpiredCredentials);
+
+        // The purge is not part of the lifecycle pass, so it stays scheduled when the pass is enabled
+        jobRegistry.register("purgeDeletedUsers", JobClass.MAINTENANCE, JobSchedule.cron(environment.getProperty(CRON_PROPERTIES.get("purgeDeletedUsers"))),
+            policyOf("purgeDeletedUsers"), false, this::purgeDeletedUsers);
+
+        // The pass applies the daily transitions, so it runs with the state transitions
+        if (lifecyclePassEnabled) {
+            jobRegistry.register(LIFECYCLE_PASS, JobClass.STATE_TRANSITION, JobSchedule.cron(environment.getProperty(LIFECYCLE_PASS_CRON_PROPERTY, LIFECYCLE_PASS_DEFAULT_CRON)),
+                policyOf(LIFECYCLE_PASS), false, this::runLifecyclePass);
+        }
+    }
+
+    private void registerJob(String jobName, JobClass jobClass, Runnable job) {
+        jobRegistry.register(jobName, jobClass, JobSchedule.cron(environment.getProperty(CRON_PROPERTIES.get(jobName))), policyOf(jobName),
+            lifecyclePassEnabled, job);
+    }
+
+    private JobPolicy policyOf(String jobName) {
+        return new JobPolicy(
+            environment.getProperty("scheduler.jobs." + jobName + ".concurrency-policy", JobPolicy.ConcurrencyPolicy.class, concurrencyPolicy),
+            environment.getProperty("scheduler.jobs." + jobName + ".misfire-policy", JobPolicy.MisfirePolicy.class, misfirePolicy));
     }
 
     // Task to set the account expiration date because the user has not logged in within the specified time
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.daily-task.set-account-expiration-date')}")
     public void setAccountExpirationDate() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for setAccountExpirationDate");
-        try {
-            userService.setAccountExpirationDate();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for setAccountExpirationDate with message: " + e.getMessage());
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for setAccountExpirationDate has been completed");
+        runJob("setAccountExpirationDate", true, JobMetrics.ROWS_UPDATED, userService::setAccountExpirationDate);
     }
 
     // Task to change isAccountNonExpired to false based on the account expiration date
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.daily-task.set-accounts-to-expired')}")
     public void setAccountsToExpired() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for setAccountsToExpired");
-        try {
-            userService.setAccountsToExpired();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for setAccountsToExpired with message: " + e.getMessage());
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for setAccountsToExpired has been completed");
+        runJob("setAccountsToExpired", true, JobMetrics.ROWS_UPDATED, userService::setAccountsToExpired);
     }
 
     // Task to change isCredentialsNonExpired to false based on the credentials expiration date
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.daily-task.set-credentials-to-expired')}")
     public void setCredentialsToExpired() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for setCredentialsToExpired");
-        try {
-            userService.setCredentialsToExpired();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for setCredentialsToExpired with message: " + e.getMessage());
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for setCredentialsToExpired has been completed");
+        runJob("setCredentialsToExpired", true, JobMetrics.ROWS_UPDATED, userService::setCredentialsToExpired);
     }
 
     // Task to send an email to users whose accounts have expired (isAccountNonExpired = false) to notify them that their accounts have expired
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.weekly-task.send-email-to-users-with-expired-accounts')}")
     public void sendEmailToUsersWithExpiredAccounts() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredAccounts");
-        try {
-            userService.sendEmailToUsersWithExpiredAccounts();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredAccounts with message: " + e.getMessage());
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredAccounts has been completed");
+        runJob("sendEmailToUsersWithExpiredAccounts", false, JobMetrics.ROWS_QUEUED, userService::sendEmailToUsersWithExpiredAccounts);
     }
 
     // Task to send an email to users whose credentials have expired (isCredentialsNonExpired = false) to notify them that their credentials have expired
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.weekly-task.send-email-to-users-with-expired-credentials')}")
     public void sendEmailToUsersWithExpiredCredentials() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredCredentials");
-        try {
-            userService.sendEmailToUsersWithExpiredCredentials();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredCredentials with message: " + e.getMessage());  
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for sendEmailToUsersWithExpiredCredentials has been completed");
+        runJob("sendEmailToUsersWithExpiredCredentials", false, JobMetrics.ROWS_QUEUED, userService::sendEmailToUsersWithExpiredCredentials);
     }
 
     // Task to clean up users whose accounts have expired and are older than the specified number of days
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.monthly-task.cleanup-expired-accounts')}")
     public void cleanUpExpiredAccounts() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for cleanUpExpiredAccounts");
-        try {
-            userService.cleanUpExpiredAccounts();
-        } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for cleanUpExpiredAccounts with message: " + e.getMessage());
-        }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for cleanUpExpiredAccounts has been completed");
+        runJob("cleanUpExpiredAccounts", true, JobMetrics.ROWS_UPDATED, userService::cleanUpExpiredAccounts);
     }
 
     // Task to clean up users whose credentials have expired and are older than the specified number of days
-    @Async("threadPoolTaskScheduler")
-    @Scheduled(cron = "#{@environment.getProperty('scheduler.monthly-task.cleanup-expired-credentials')}")
     public void cleanUpExpiredCredentials() {
-        logger.info("Cron task runs on thread " + Thread.currentThread().getName() + " for cleanUpExpiredCredentials");
-        try {
-            userService.cleanUpExpiredCredentials();
+        runJob("cleanUpExpiredCredentials", true, JobMetrics.ROWS_UPDATED, userService::cleanUpExpiredCredentials);
+    }
+
+    // Task to archive the users deleted more than the specified number of days ago, then remove them from the users table
+    public void purgeDeletedUsers() {
+        runJob("purgeDeletedUsers", false, JobMetrics.ROWS_DELETED, userService::purgeDeletedUsers);
+    }
+
+    // Task to apply the transitions of all the jobs above in a single scan of the users table, when the lifecycle pass is enabled
+    // The daily transitions are applied by every pass, the weekly and monthly ones by the first pass after the cron of their job has fired.
+    // The start of the previous successful pass is persisted, so a transition whose cron fired while the application was down is not missed.
+    // The crons fire in the default time zone, as on the ThreadPoolTaskScheduler.
+    public void runLifecyclePass() {
+        ZonedDateTime now = ZonedDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+        ZonedDateTime since = jobTriggerService.findLastFired(PREVIOUS_LIFECYCLE_PASS)
+            .map(previousPass -> ZonedDateTime.ofInstant(previousPass, ZoneId.systemDefault()))
+            .orElse(now.minusDays(1));
+
+        Set<LifecycleTransition> transitions = EnumSet.noneOf(LifecycleTransition.class);
+        for (LifecycleTransition transition : LifecycleTransition.values()) {
+            if (transition.isEveryPass() || isScheduleDue(transition.getJobName(), since, now)) {
+                transitions.add(transition);
+            }
+        }
+
+        runJob(LIFECYCLE_PASS, false, JobMetrics.ROWS_UPDATED, () -> {
+            int updatedUsers = userService.runLifecyclePass(transitions);
+            jobTriggerService.recordFired(PREVIOUS_LIFECYCLE_PASS, now.toInstant());
+            return updatedUsers;
+        });
+    }
+
+    // True if the current schedule of the job has fired after since and not after now
+    private boolean isScheduleDue(String jobName, ZonedDateTime since, ZonedDateTime now) {
+        ZonedDateTime next = jobRegistry.getSchedule(jobName).map(schedule -> schedule.next(since)).orElse(null);
+        return next != null && !next.isAfter(now);
+    }
+
+    // Run a job under its cluster lock, log its start and end and record its start lag, duration, outcome and number of processed users.
+    // A shardable job is not locked as a whole when partition sharding is enabled, its partitions are locked by the ChunkProcessor instead.
+    private void runJob(String jobName, boolean shardable, String rowsType, IntSupplier job) {
+        Instant actualStart = clock.instant();
+        JobRun jobRun = JobRegistry.currentRun().orElseGet(() -> new JobRun(UUID.randomUUID().toString(), actualStart));
+
+        Optional<JobLease> lease = shardable && jobLockService.isPartitionShardingEnabled()
+            ? Optional.of(JobLease.UNLOCKED)
+            : jobLockService.tryAcquire(jobName);
+        if (lease.isEmpty()) {
+            logger.info("Cron task for {} skipped, it is running on another node", jobName);
+            journal(jobName, jobRun, actualStart, 0, 0, JobExecution.Outcome.SKIPPED, null);
+            return;
+        }
+
+        // A run not started by the registry (called directly) has no scheduled start
+        JobRegistry.currentRun().ifPresent(run -> jobMetrics.recordStart(jobName, run.scheduledStart()));
+        logger.info("Cron task runs on thread {} for {} with run id {}", Thread.currentThread().getName(), jobName, jobRun.runId());
+
+        long startNanos = System.nanoTime();
+        int processedUsers = 0;
+        JobExecution.Outcome outcome;
+        String error = null;
+        try (JobLease jobLease = lease.get()) {
+            jobGuard.register(jobRun.runId(), jobLease);
+
+            processedUsers = job.getAsInt();
+            outcome = JobExecution.Outcome.SUCCESS;
+            jobMetrics.recordRun(jobName, System.nanoTime() - startNanos, true);
+            jobMetrics.recordRows(jobName, rowsType, processedUsers);
+            logger.info("Cron task on thread {} for {} processed {} users", Thread.currentThread().getName(), jobName, processedUsers);
         } catch (Exception e) {
-            logger.error("Exception on thread " + Thread.currentThread().getName() + " for cleanUpExpiredCredentials with message: " + e.getMessage());
+            // The services wrap the exceptions of their jobs, a job stopped between two chunks is not a failure
+            JobStoppedException stopped = stoppedCause(e);
+            jobMetrics.recordRun(jobName, System.nanoTime() - startNanos, false);
+            if (stopped != null) {
+                outcome = JobExecution.Outcome.STOPPED;
+                error = stopped.getMessage();
+                logger.warn("Cron task on thread {} for {} has been stopped: {}", Thread.currentThread().getName(), jobName, stopped.getMessage());
+            } else {
+                outcome = JobExecution.Outcome.FAILURE;
+                error = e.getCause() != null ? e.getMessage() + ": " + e.getCause().getMessage() : e.getMessage();
+                logger.error("Exception on thread {} for {} with message: {}", Thread.currentThread().getName(), jobName, e.getMessage());
+            }
+        } finally {
+            jobGuard.unregister(jobRun.runId());
         }
-        logger.info("Cron task on thread " + Thread.currentThread().getName() + " for cleanUpExpiredCredentials has been completed");
+
+        journal(jobName, jobRun, actualStart, System.nanoTime() - startNanos, processedUsers, outcome, error);
+        logger.info("Cron task on thread {} for {} has been completed", Thread.currentThread().getName(), jobName);
+    }
+
+    // JobStoppedException a run has been stopped with, null if the run failed
+    private static JobStoppedException stoppedCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JobStoppedException stopped) {
+                return stopped;
+            }
+        }
+        return null;
+    }
+
+    // Append the run to the job execution journal, the journal writes it asynchronously
+    private void journal(String jobName, JobRun jobRun, Instant actualStart, long durationNanos, long rowsAffected, JobExecution.Outcome outcome,
+        String error) {
+        if (error != null && error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+
+        jobJournal.append(new JobExecution(jobRun.runId(), jobName, jobLockService.getNodeId(), jobRun.scheduledStart(), actualStart,
+            TimeUnit.NANOSECONDS.toMillis(durationNanos), rowsAffected, outcome, error));
     }
-}
\ No newline at end of file
+}
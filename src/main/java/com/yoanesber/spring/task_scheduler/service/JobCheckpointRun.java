@@ -0,0 +1,19 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.time.Instant;
+
+import com.yoanesber.spring.task_scheduler.batch.ChunkCheckpoint;
+
+// Run of a resumable job, either a new run or the resumed unfinished run of the job
+public interface JobCheckpointRun extends ChunkCheckpoint {
+
+    String getJobName();
+
+    // Start of the run, the first attempt's start when the run has been resumed
+    Instant getRunTime();
+
+    int getPartitionCount();
+
+    // Rows processed by the previous attempts of the run
+    long getResumedRows();
+}
@@ -0,0 +1,16 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.time.Instant;
+
+public interface JobCheckpointService {
+
+    // Method to start a run of a resumable job split into partitionCount partitions. The unfinished run of the job is resumed
+    // if it was split the same way and is not older than the maximum age, otherwise a new run starting at now is created.
+    JobCheckpointRun startRun(String jobName, Instant now, int partitionCount);
+
+    // Method to end an attempt of a run, the checkpoints are deleted once every partition of the run has completed
+    void finishRun(JobCheckpointRun run);
+
+    // Method to check whether a job has an unfinished run, i.e. checkpoints left by an attempt that failed or was stopped
+    boolean hasUnfinishedRun(String jobName);
+}
@@ -0,0 +1,15 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.util.List;
+
+import com.yoanesber.spring.task_scheduler.journal.JobDurationStats;
+import com.yoanesber.spring.task_scheduler.journal.JobExecutionHistory;
+
+public interface JobExecutionService {
+
+    // Method to compute the duration percentiles of every job over the last given number of days, one entry per job
+    List<JobDurationStats> getDurationStats(int days);
+
+    // Method to compute the duration percentiles of a job for each of the last given number of days, with its latest runs
+    JobExecutionHistory getHistory(String jobName, int days);
+}
@@ -0,0 +1,30 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+// Lease on a job lock acquired through the JobLockService, closing the lease releases the lock
+public interface JobLease extends AutoCloseable {
+
+    // Lease returned when the job lock is disabled, it is always held
+    JobLease UNLOCKED = new JobLease() {
+        @Override
+        public String getName() {
+            return "unlocked";
+        }
+
+        @Override
+        public boolean isHeld() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    String getName();
+
+    // False once the heartbeat failed to extend the lease, the job should then stop as soon as possible
+    boolean isHeld();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,18 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.util.Optional;
+
+public interface JobLockService {
+
+    // Method to acquire the lock with the given name without waiting
+    // Returns an empty Optional if the lock is held by another node, and JobLease.UNLOCKED if the job lock is disabled
+    // The lease is extended by a heartbeat until it is closed
+    Optional<JobLease> tryAcquire(String name);
+
+    // Method to check whether the partitions of the bulk update jobs are locked (and so shared between the nodes)
+    // one by one, instead of locking the whole job
+    boolean isPartitionShardingEnabled();
+
+    // Method to get the identifier of this node, as written in the job_lock table
+    String getNodeId();
+}
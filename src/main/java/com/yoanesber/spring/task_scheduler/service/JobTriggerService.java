@@ -0,0 +1,13 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface JobTriggerService {
+
+    // Method to find the time the schedule of a job last fired, empty if it never fired
+    Optional<Instant> findLastFired(String jobName);
+
+    // Method to record that the schedule of a job has fired
+    void recordFired(String jobName, Instant firedAt);
+}
@@ -0,0 +1,15 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface JobWatermarkService {
+
+    // Method to find the start of the delta window of a job run starting at now, i.e. its watermark minus a safety overlap
+    // Returns an empty Optional if the job has to scan the whole table: the watermarks are disabled, or the watermark
+    // is missing, in the future (corrupt) or older than the maximum age
+    Optional<Instant> findDeltaStart(String jobName, Instant now);
+
+    // Method to move the watermark of a job to the start of its last successful run
+    void advance(String jobName, Instant watermark);
+}
@@ -0,0 +1,36 @@
+package com.yoanesber.spring.task_scheduler.service;
+
+// State transitions the lifecycle pass can apply, one per job of the TaskScheduler
+public enum LifecycleTransition {
+    SET_ACCOUNT_EXPIRATION_DATE("setAccountExpirationDate", true),
+    SET_ACCOUNTS_TO_EXPIRED("setAccountsToExpired", true),
+    SET_CREDENTIALS_TO_EXPIRED("setCredentialsToExpired", true),
+    NOTIFY_EXPIRED_ACCOUNTS("sendEmailToUsersWithExpiredAccounts", false),
+    NOTIFY_EXPIRED_CREDENTIALS("sendEmailToUsersWithExpiredCredentials", false),
+    CLEAN_UP_EXPIRED_ACCOUNTS("cleanUpExpiredAccounts", false),
+    CLEAN_UP_EXPIRED_CREDENTIALS("cleanUpExpiredCredentials", false);
+
+    private final String jobName;
+
+    private final boolean everyPass;
+
+    LifecycleTransition(String jobName, boolean everyPass) {
+        this.jobName = jobName;
+        this.everyPass = everyPass;
+    }
+
+    // Name of the job applying the same transition when the jobs run on their own crons
+    public String getJobName() {
+        return jobName;
+    }
+
+    // True if the transition updates users, false if it notifies them
+    public boolean isUpdate() {
+        return this != NOTIFY_EXPIRED_ACCOUNTS && this != NOTIFY_EXPIRED_CREDENTIALS;
+    }
+
+    // True if the transition is applied by every pass, otherwise only by the first pass after the cron of its job has fired
+    public boolean isEveryPass() {
+        return everyPass;
+    }
+}
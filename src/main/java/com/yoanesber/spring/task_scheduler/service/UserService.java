@@ -1,27 +1,46 @@
 package com.yoanesber.spring.task_scheduler.service;
 
+import java.util.Set;
+
 public interface UserService {
 
     // Method to set the account expiration date because the user has not logged in within the specified time
-    void setAccountExpirationDate();
+    // Returns the number of users updated
+    int setAccountExpirationDate();
 
     // Method to change isAccountNonExpired to false based on the account expiration date
-    void setAccountsToExpired();
+    // Returns the number of users updated
+    int setAccountsToExpired();
 
     // Method to change isCredentialsNonExpired to false based on the credentials expiration date
     // The CredentialsNonExpired field is used to determine whether the user's credentials (password) have expired  
     // The credentials expiration date is set when the user is created (forcing a password change), and it can be updated by the user regularly
-    void setCredentialsToExpired();
+    // Returns the number of users updated
+    int setCredentialsToExpired();
 
     // Method to send an email to users whose accounts have expired (isAccountNonExpired = false) to notify them that their accounts have expired
-    void sendEmailToUsersWithExpiredAccounts();
+    // The emails are sent asynchronously, returns the number of users found
+    int sendEmailToUsersWithExpiredAccounts();
 
     // Method to send an email to users whose credentials have expired (isCredentialsNonExpired = false) to notify them that their credentials have expired
-    void sendEmailToUsersWithExpiredCredentials();
+    // The emails are sent asynchronously, returns the number of users found
+    int sendEmailToUsersWithExpiredCredentials();
 
     // Method to clean up users whose accounts have expired and are older than the specified number of days 
-    void cleanUpExpiredAccounts();
+    // Returns the number of users updated
+    int cleanUpExpiredAccounts();
     
     // Method to clean up users whose credentials have expired and are older than the specified number of days
-    void cleanUpExpiredCredentials();
+    // Returns the number of users updated
+    int cleanUpExpiredCredentials();
+
+    // Method to archive the users deleted (isDeleted = true) more than the specified number of days ago, then remove them from the users table
+    // Returns the number of users removed
+    int purgeDeletedUsers();
+
+    // Method to apply the given transitions of the jobs above in a single scan of the users table (lifecycle pass)
+    // Every user is read once, the transitions are evaluated in memory in the order of the jobs, and each chunk of users
+    // is written with one update per transition, then the notifications of the chunk are queued
+    // Returns the number of users updated
+    int runLifecyclePass(Set<LifecycleTransition> transitions);
 }
@@ -0,0 +1,150 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.yoanesber.spring.task_scheduler.entity.JobCheckpoint;
+import com.yoanesber.spring.task_scheduler.repository.JobCheckpointRepository;
+import com.yoanesber.spring.task_scheduler.service.JobCheckpointRun;
+import com.yoanesber.spring.task_scheduler.service.JobCheckpointService;
+
+@Service
+public class JobCheckpointServiceImpl implements JobCheckpointService {
+
+    private final JobCheckpointRepository jobCheckpointRepository;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // An unfinished run older than this is abandoned and the next attempt starts a new run
+    @Value("${scheduler.checkpoint.max-age-hours:24}")
+    private long maxAgeHours;
+
+    public JobCheckpointServiceImpl(JobCheckpointRepository jobCheckpointRepository, Clock clock) {
+        this.jobCheckpointRepository = jobCheckpointRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public JobCheckpointRun startRun(String jobName, Instant now, int partitionCount) {
+        List<JobCheckpoint> checkpoints = jobCheckpointRepository.findByJobName(jobName);
+        if (checkpoints.isEmpty()) {
+            return new CheckpointRun(jobName, now, partitionCount, Map.of());
+        }
+
+        Instant runTime = checkpoints.get(0).getRunTime();
+        boolean resumable = checkpoints.stream()
+            .allMatch(checkpoint -> checkpoint.getRunTime().equals(runTime) && checkpoint.getPartitionCount() == partitionCount)
+            && !runTime.isBefore(now.minus(Duration.ofHours(maxAgeHours)));
+        if (!resumable) {
+            logger.warn("Unfinished run of {} started at {} cannot be resumed, starting a new run", jobName, runTime);
+            jobCheckpointRepository.deleteByJobName(jobName);
+            return new CheckpointRun(jobName, now, partitionCount, Map.of());
+        }
+
+        CheckpointRun run = new CheckpointRun(jobName, runTime, partitionCount,
+            checkpoints.stream().collect(Collectors.toMap(JobCheckpoint::getPartitionIndex, Function.identity())));
+        logger.info("Resuming the run of {} started at {}, {} rows have already been processed", jobName, runTime, run.getResumedRows());
+        return run;
+    }
+
+    @Override
+    public void finishRun(JobCheckpointRun run) {
+        List<JobCheckpoint> checkpoints = jobCheckpointRepository.findByJobName(run.getJobName());
+
+        // With partition sharding, the other partitions may still be running on other nodes
+        boolean runCompleted = checkpoints.size() == run.getPartitionCount()
+            && checkpoints.stream().allMatch(checkpoint -> checkpoint.getRunTime().equals(run.getRunTime()) && checkpoint.isCompleted());
+        if (runCompleted) {
+            jobCheckpointRepository.deleteByJobName(run.getJobName());
+        }
+    }
+
+    @Override
+    public boolean hasUnfinishedRun(String jobName) {
+        return jobCheckpointRepository.existsByJobName(jobName);
+    }
+
+    private final class CheckpointRun implements JobCheckpointRun {
+
+        private final String jobName;
+
+        private final Instant runTime;
+
+        private final int partitionCount;
+
+        // Checkpoints of the previous attempts, by partition
+        private final Map<Integer, JobCheckpoint> resumedCheckpoints;
+
+        private CheckpointRun(String jobName, Instant runTime, int partitionCount, Map<Integer, JobCheckpoint> resumedCheckpoints) {
+            this.jobName = jobName;
+            this.runTime = runTime;
+            this.partitionCount = partitionCount;
+            this.resumedCheckpoints = resumedCheckpoints;
+        }
+
+        @Override
+        public String getJobName() {
+            return jobName;
+        }
+
+        @Override
+        public Instant getRunTime() {
+            return runTime;
+        }
+
+        @Override
+        public int getPartitionCount() {
+            return partitionCount;
+        }
+
+        @Override
+        public long getResumedRows() {
+            return resumedCheckpoints.values().stream().mapToLong(JobCheckpoint::getProcessedRows).sum();
+        }
+
+        @Override
+        public long resumeAfter(int partition) {
+            JobCheckpoint checkpoint = resumedCheckpoints.get(partition);
+            if (checkpoint == null) {
+                return 0;
+            }
+
+            return checkpoint.isCompleted() ? Long.MAX_VALUE : checkpoint.getLastId();
+        }
+
+        @Override
+        public void chunkCompleted(int partition, long lastId, int affectedRows) {
+            JobCheckpoint checkpoint = load(partition);
+            checkpoint.setLastId(lastId);
+            checkpoint.setProcessedRows(checkpoint.getProcessedRows() + affectedRows);
+            checkpoint.setUpdatedDate(clock.instant());
+            jobCheckpointRepository.save(checkpoint);
+        }
+
+        @Override
+        public void partitionCompleted(int partition) {
+            JobCheckpoint checkpoint = load(partition);
+            checkpoint.setCompleted(true);
+            checkpoint.setUpdatedDate(clock.instant());
+            jobCheckpointRepository.save(checkpoint);
+        }
+
+        private JobCheckpoint load(int partition) {
+            String name = jobName + "#partition-" + partition;
+            return jobCheckpointRepository.findById(name)
+                .orElseGet(() -> new JobCheckpoint(name, jobName, partition, partitionCount, runTime, 0, 0, false, clock.instant()));
+        }
+    }
+}
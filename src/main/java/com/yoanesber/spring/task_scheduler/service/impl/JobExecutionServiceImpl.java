@@ -0,0 +1,97 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+import com.yoanesber.spring.task_scheduler.journal.JobDurationStats;
+import com.yoanesber.spring.task_scheduler.journal.JobExecutionHistory;
+import com.yoanesber.spring.task_scheduler.repository.JobExecutionRepository;
+import com.yoanesber.spring.task_scheduler.service.JobExecutionService;
+
+@Service
+public class JobExecutionServiceImpl implements JobExecutionService {
+
+    private final JobExecutionRepository jobExecutionRepository;
+
+    private final Clock clock;
+
+    public JobExecutionServiceImpl(JobExecutionRepository jobExecutionRepository, Clock clock) {
+        this.jobExecutionRepository = jobExecutionRepository;
+        this.clock = clock;
+    }
+
+    @Override
+    public List<JobDurationStats> getDurationStats(int days) {
+        LocalDate from = firstDay(days);
+        LocalDate to = LocalDate.now(clock.withZone(ZoneOffset.UTC));
+
+        return group(jobExecutionRepository.findByActualStartGreaterThanEqualOrderByActualStart(startOf(from)), JobExecution::getJobName)
+            .entrySet().stream()
+            .map(entry -> stats(entry.getKey(), from, to, entry.getValue()))
+            .toList();
+    }
+
+    @Override
+    public JobExecutionHistory getHistory(String jobName, int days) {
+        LocalDate from = firstDay(days);
+        List<JobDurationStats> dailyStats =
+            group(jobExecutionRepository.findByJobNameAndActualStartGreaterThanEqualOrderByActualStart(jobName, startOf(from)),
+                execution -> LocalDate.ofInstant(execution.getActualStart(), ZoneOffset.UTC))
+            .entrySet().stream()
+            .map(entry -> stats(jobName, entry.getKey(), entry.getKey(), entry.getValue()))
+            .toList();
+
+        return new JobExecutionHistory(jobName, dailyStats, jobExecutionRepository.findTop20ByJobNameOrderByActualStartDesc(jobName));
+    }
+
+    private LocalDate firstDay(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("The number of days must be at least 1");
+        }
+
+        return LocalDate.now(clock.withZone(ZoneOffset.UTC)).minusDays(days - 1L);
+    }
+
+    private static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    // The runs skipped because the job was running on another node did not run here, they are left out
+    private static <K extends Comparable<? super K>> Map<K, List<JobExecution>> group(List<JobExecution> executions, Function<JobExecution, K> key) {
+        return executions.stream()
+            .filter(execution -> execution.getOutcome() != JobExecution.Outcome.SKIPPED)
+            .collect(Collectors.groupingBy(key, TreeMap::new, Collectors.toList()));
+    }
+
+    private static JobDurationStats stats(String jobName, LocalDate from, LocalDate to, List<JobExecution> executions) {
+        long[] durations = executions.stream()
+            .filter(execution -> execution.getOutcome() == JobExecution.Outcome.SUCCESS)
+            .mapToLong(JobExecution::getDurationMs)
+            .sorted()
+            .toArray();
+        int stopped = (int) executions.stream().filter(execution -> execution.getOutcome() == JobExecution.Outcome.STOPPED).count();
+        int failures = executions.size() - durations.length - stopped;
+
+        if (durations.length == 0) {
+            return new JobDurationStats(jobName, from, to, executions.size(), failures, stopped, null, null, null);
+        }
+        return new JobDurationStats(jobName, from, to, executions.size(), failures, stopped, percentile(durations, 0.50),
+            percentile(durations, 0.99), durations[durations.length - 1]);
+    }
+
+    // Nearest-rank percentile of sorted values
+    private static long percentile(long[] sortedValues, double percentile) {
+        int rank = (int) Math.ceil(percentile * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+}
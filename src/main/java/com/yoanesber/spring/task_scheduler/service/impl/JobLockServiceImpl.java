@@ -0,0 +1,158 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import com.yoanesber.spring.task_scheduler.repository.JobLockRepository;
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+import com.yoanesber.spring.task_scheduler.service.JobLockService;
+
+@Service
+public class JobLockServiceImpl implements JobLockService {
+
+    private final JobLockRepository jobLockRepository;
+
+    private final ThreadPoolTaskScheduler threadPoolTaskScheduler;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.lock.enabled:false}")
+    private boolean lockEnabled;
+
+    @Value("${scheduler.lock.partition-sharding-enabled:false}")
+    private boolean partitionShardingEnabled;
+
+    // Identifier of this node in the job_lock table
+    @Value("${scheduler.lock.node-id:#{null}}")
+    private String nodeId;
+
+    // How long a lease is valid without a heartbeat, the heartbeat extends it every third of this time
+    @Value("${scheduler.lock.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // Minimum time a lock stays taken after it has been acquired, so the other nodes that fire the same cron a little later skip the run
+    @Value("${scheduler.lock.min-hold-seconds:60}")
+    private long minHoldSeconds;
+
+    public JobLockServiceImpl(JobLockRepository jobLockRepository,
+        @Qualifier("threadPoolTaskScheduler") ThreadPoolTaskScheduler threadPoolTaskScheduler) {
+        this.jobLockRepository = jobLockRepository;
+        this.threadPoolTaskScheduler = threadPoolTaskScheduler;
+    }
+
+    @Override
+    public Optional<JobLease> tryAcquire(String name) {
+        if (!lockEnabled) {
+            return Optional.of(JobLease.UNLOCKED);
+        }
+
+        String owner = getNodeId();
+
+        // Take over an expired lock first, then create the lock if it does not exist yet
+        boolean acquired = jobLockRepository.tryAcquire(name, owner, ttlSeconds) == 1;
+        if (!acquired) {
+            try {
+                acquired = jobLockRepository.insertIfAbsent(name, owner, ttlSeconds) == 1;
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the lock at the same time
+                acquired = false;
+            }
+        }
+
+        if (!acquired) {
+            logger.debug("Lock {} is held by another node", name);
+            return Optional.empty();
+        }
+
+        logger.debug("Lock {} acquired by {} for {} s", name, owner, ttlSeconds);
+        return Optional.of(new HeartbeatJobLease(name, owner));
+    }
+
+    @Override
+    public boolean isPartitionShardingEnabled() {
+        return lockEnabled && partitionShardingEnabled;
+    }
+
+    @Override
+    public String getNodeId() {
+        if (nodeId == null || nodeId.isBlank()) {
+            // pid@hostname
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return nodeId;
+    }
+
+    // Lease extended by a heartbeat on the ThreadPoolTaskScheduler until it is closed or the heartbeat fails.
+    // Only the heartbeat period is measured locally, the expiry of the lease is always computed by the database.
+    private class HeartbeatJobLease implements JobLease {
+
+        private final String name;
+
+        private final String owner;
+
+        private final ScheduledFuture<?> heartbeat;
+
+        private volatile boolean held = true;
+
+        HeartbeatJobLease(String name, String owner) {
+            this.name = name;
+            this.owner = owner;
+            Duration period = Duration.ofSeconds(Math.max(1, ttlSeconds / 3));
+            this.heartbeat = threadPoolTaskScheduler.scheduleAtFixedRate(this::extend,
+                threadPoolTaskScheduler.getClock().instant().plus(period), period);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isHeld() {
+            return held;
+        }
+
+        private void extend() {
+            try {
+                if (jobLockRepository.extend(name, owner, ttlSeconds) == 0) {
+                    lose("the lease has been taken over or has expired");
+                }
+            } catch (Exception e) {
+                // The lease might expire before the database can be reached again
+                lose(e.getMessage());
+            }
+        }
+
+        private void lose(String reason) {
+            held = false;
+            heartbeat.cancel(false);
+            logger.warn("Lock {} has been lost by {}: {}", name, owner, reason);
+        }
+
+        @Override
+        public void close() {
+            heartbeat.cancel(false);
+            if (!held) {
+                return;
+            }
+
+            held = false;
+            try {
+                jobLockRepository.release(name, owner, minHoldSeconds);
+            } catch (Exception e) {
+                // The lock expires on its own after the ttl
+                logger.warn("Failed to release lock {} with message: {}", name, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.yoanesber.spring.task_scheduler.entity.JobTrigger;
+import com.yoanesber.spring.task_scheduler.repository.JobTriggerRepository;
+import com.yoanesber.spring.task_scheduler.service.JobTriggerService;
+
+@Service
+public class JobTriggerServiceImpl implements JobTriggerService {
+
+    private final JobTriggerRepository jobTriggerRepository;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public JobTriggerServiceImpl(JobTriggerRepository jobTriggerRepository) {
+        this.jobTriggerRepository = jobTriggerRepository;
+    }
+
+    @Override
+    public Optional<Instant> findLastFired(String jobName) {
+        return jobTriggerRepository.findById(jobName).map(JobTrigger::getLastFiredDate);
+    }
+
+    @Override
+    public void recordFired(String jobName, Instant firedAt) {
+        try {
+            jobTriggerRepository.save(new JobTrigger(jobName, firedAt));
+        } catch (Exception e) {
+            // The job still runs, only the misfire detection of the next startup works from an older time
+            logger.error("Exception while recording the trigger of {} with message: {}", jobName, e.getMessage());
+        }
+    }
+}
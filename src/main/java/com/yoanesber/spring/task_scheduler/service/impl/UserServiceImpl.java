@@ -1,13 +1,37 @@
 package com.yoanesber.spring.task_scheduler.service.impl;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.archive.UserArchiver;
+import com.yoanesber.spring.task_scheduler.batch.ChunkProcessor;
+import com.yoanesber.spring.task_scheduler.batch.EntityBatchWriter;
+import com.yoanesber.spring.task_scheduler.expiration.ExpirationIndex;
+import com.yoanesber.spring.task_scheduler.notification.NotificationPipeline;
+import com.yoanesber.spring.task_scheduler.notification.NotificationRecord;
+import com.yoanesber.spring.task_scheduler.notification.NotificationType;
+import com.yoanesber.spring.task_scheduler.policy.BusinessPolicies;
+import com.yoanesber.spring.task_scheduler.policy.BusinessPolicy;
+import com.yoanesber.spring.task_scheduler.repository.UserContact;
+import com.yoanesber.spring.task_scheduler.repository.UserLifecycleState;
 import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.service.JobCheckpointRun;
+import com.yoanesber.spring.task_scheduler.service.JobCheckpointService;
+import com.yoanesber.spring.task_scheduler.service.JobWatermarkService;
+import com.yoanesber.spring.task_scheduler.service.LifecycleTransition;
 import com.yoanesber.spring.task_scheduler.service.UserService;
 
 @Service
@@ -15,159 +39,443 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
 
-    @Value("${business.policy.allowed-inactive-days}")
-    private int allowedInactiveDays;
+    private final ChunkProcessor chunkProcessor;
 
-    @Value("${business.policy.expired-account-retention-days}")
-    private int expiredAccountRetentionDays;
+    private final EntityBatchWriter entityBatchWriter;
 
-    @Value("${business.policy.expired-credentials-retention-days}")
-    private int expiredCredentialsRetentionDays;
+    private final NotificationPipeline notificationPipeline;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    private final JobWatermarkService jobWatermarkService;
+
+    private final JobCheckpointService jobCheckpointService;
+
+    private final ExpirationIndex expirationIndex;
+
+    private final UserArchiver userArchiver;
+
+    private final BusinessPolicies businessPolicies;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // If true, the update jobs run as set-based UPDATE statements chunked by id range,
+    // otherwise each user is loaded and saved through the entity
+    @Value("${scheduler.batch.bulk-update-enabled:true}")
+    private boolean bulkUpdateEnabled;
+
+    public UserServiceImpl(UserRepository userRepository, ChunkProcessor chunkProcessor, EntityBatchWriter entityBatchWriter,
+        NotificationPipeline notificationPipeline, JobWatermarkService jobWatermarkService, JobCheckpointService jobCheckpointService,
+        ExpirationIndex expirationIndex, UserArchiver userArchiver, BusinessPolicies businessPolicies, Clock clock) {
         this.userRepository = userRepository;
+        this.chunkProcessor = chunkProcessor;
+        this.entityBatchWriter = entityBatchWriter;
+        this.notificationPipeline = notificationPipeline;
+        this.jobWatermarkService = jobWatermarkService;
+        this.jobCheckpointService = jobCheckpointService;
+        this.expirationIndex = expirationIndex;
+        this.userArchiver = userArchiver;
+        this.businessPolicies = businessPolicies;
+        this.clock = clock;
     }
 
     @Override
-    @Transactional
-    public void setAccountExpirationDate() {
+    public int setAccountExpirationDate() {
         try {
-            // Find users who have not logged in (inactive) for a certain period of time
-            userRepository.findUsersInactiveForDays(allowedInactiveDays).forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
+            Instant now = clock.instant();
+            Instant lastLoginCutoff = cutoff(now, businessPolicies.current().allowedInactiveDays());
 
-                // Set the account expiration date to the current date
-                user.setAccountExpirationDate(Instant.now());
-                user.setUpdatedBy("System");
-                user.setUpdatedDate(Instant.now());
-                userRepository.save(user);
-            });
+            int updatedUsers = setAccountExpirationDateOfInactiveUsers(now, lastLoginCutoff);
+
+            // The expiration dates set above are due right away
+            if (updatedUsers > 0 && expirationIndex.isEnabled()) {
+                expirationIndex.reload();
+            }
+            return updatedUsers;
         } catch (Exception e) {
             throw new RuntimeException("Error setting account expiration date", e);
         }
     }
 
+    // Set the account expiration date of the users who have not logged in since the cutoff
+    private int setAccountExpirationDateOfInactiveUsers(Instant now, Instant lastLoginCutoff) {
+        if (bulkUpdateEnabled) {
+            // Set the account expiration date of inactive users with one UPDATE per id range
+            return updateAllUsersInIdRanges("setAccountExpirationDate", (fromId, toId) ->
+                userRepository.setAccountExpirationDateOfInactiveUsers(now, lastLoginCutoff, fromId, toId));
+        }
+
+        // Find users who have not logged in (inactive) for a certain period of time, one chunk of ids (and one transaction) at a time
+        return chunkProcessor.processInKeysetChunks("setAccountExpirationDate",
+            (lastId, limit) -> userRepository.findUsersLastLoggedInBefore(lastLoginCutoff, lastId, limit),
+            userIds -> entityBatchWriter.update(userRepository, userIds, user -> {
+                // Set the account expiration date to the current date
+                user.setAccountExpirationDate(now);
+                user.setUpdatedBy("System");
+                user.setUpdatedDate(now);
+            }));
+    }
+
     @Override
-    @Transactional
-    public void setAccountsToExpired() {
+    public int setAccountsToExpired() {
         try {
-            // Find users whose account expiration date is less than the current date
-            userRepository.findAccountExpirationDateLessThanNow().forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
+            Instant now = clock.instant();
 
-                // Set the account to expire
-                user.setAccountNonExpired(false);
-                user.setUpdatedBy("System");
-                user.setUpdatedDate(Instant.now());
-                userRepository.save(user);
-            });
+            // Only the accounts whose expiration date has passed since the previous run can change state
+            Optional<Instant> deltaStart = jobWatermarkService.findDeltaStart("setAccountsToExpired", now);
+            int updatedUsers = deltaStart.isPresent()
+                ? expireAccountsSince(deltaStart.get(), now)
+                : expireAllAccounts(now);
+
+            jobWatermarkService.advance("setAccountsToExpired", now);
+            return updatedUsers;
         } catch (Exception e) {
             throw new RuntimeException("Error setting accounts to expire", e);
         }
     }
 
+    // Incremental run of setAccountsToExpired: expire the accounts whose expiration date has passed within [deltaStart, now),
+    // one chunk of ids (and one transaction) at a time. Returns the number of users updated.
+    private int expireAccountsSince(Instant deltaStart, Instant now) {
+        AtomicInteger updatedUsers = new AtomicInteger();
+        chunkProcessor.processInKeysetChunks("setAccountsToExpired",
+            (lastId, limit) -> userRepository.findAccountExpirationDateBetween(deltaStart, now, lastId, limit),
+            userIds -> updatedUsers.addAndGet(bulkUpdateEnabled
+                ? userRepository.setAccountsToExpiredByIds(now, userIds)
+                : entityBatchWriter.update(userRepository, userIds, user -> {
+                    // Set the account to expire
+                    user.setAccountNonExpired(false);
+                    user.setUpdatedBy("System");
+                    user.setUpdatedDate(now);
+                })));
+
+        return updatedUsers.get();
+    }
+
+    // Full scan of setAccountsToExpired
+    private int expireAllAccounts(Instant now) {
+        if (bulkUpdateEnabled) {
+            // Expire the accounts with one UPDATE per id range
+            return updateAllUsersInIdRanges("setAccountsToExpired", (fromId, toId) ->
+                userRepository.setAccountsToExpired(now, fromId, toId));
+        }
+
+        // Find users whose account expiration date is less than the current date, one chunk of ids (and one transaction) at a time
+        return chunkProcessor.processInKeysetChunks("setAccountsToExpired",
+            (lastId, limit) -> userRepository.findAccountExpirationDateLessThan(now, lastId, limit),
+            userIds -> entityBatchWriter.update(userRepository, userIds, user -> {
+                // Set the account to expire
+                user.setAccountNonExpired(false);
+                user.setUpdatedBy("System");
+                user.setUpdatedDate(now);
+            }));
+    }
+
     @Override
-    @Transactional
-    public void setCredentialsToExpired() {
+    public int setCredentialsToExpired() {
         try {
-            // Find users whose credentials expiration date is less than the current date
-            userRepository.findCredentialsExpirationDateLessThanNow().forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
+            Instant now = clock.instant();
 
-                // Set the credentials to expire
-                user.setCredentialsNonExpired(false);
-                user.setUpdatedBy("System");
-                user.setUpdatedDate(Instant.now());
-                userRepository.save(user);
-            });
+            // Only the credentials whose expiration date has passed since the previous run can change state
+            Optional<Instant> deltaStart = jobWatermarkService.findDeltaStart("setCredentialsToExpired", now);
+            int updatedUsers = deltaStart.isPresent()
+                ? expireCredentialsSince(deltaStart.get(), now)
+                : expireAllCredentials(now);
+
+            jobWatermarkService.advance("setCredentialsToExpired", now);
+            return updatedUsers;
         } catch (Exception e) {
             throw new RuntimeException("Error setting credentials to expire", e);
         }
     }
 
+    // Incremental run of setCredentialsToExpired: expire the credentials whose expiration date has passed within [deltaStart, now),
+    // one chunk of ids (and one transaction) at a time. Returns the number of users updated.
+    private int expireCredentialsSince(Instant deltaStart, Instant now) {
+        AtomicInteger updatedUsers = new AtomicInteger();
+        chunkProcessor.processInKeysetChunks("setCredentialsToExpired",
+            (lastId, limit) -> userRepository.findCredentialsExpirationDateBetween(deltaStart, now, lastId, limit),
+            userIds -> updatedUsers.addAndGet(bulkUpdateEnabled
+                ? userRepository.setCredentialsToExpiredByIds(now, userIds)
+                : entityBatchWriter.update(userRepository, userIds, user -> {
+                    // Set the credentials to expire
+                    user.setCredentialsNonExpired(false);
+                    user.setUpdatedBy("System");
+                    user.setUpdatedDate(now);
+                })));
+
+        return updatedUsers.get();
+    }
+
+    // Full scan of setCredentialsToExpired
+    private int expireAllCredentials(Instant now) {
+        if (bulkUpdateEnabled) {
+            // Expire the credentials with one UPDATE per id range
+            return updateAllUsersInIdRanges("setCredentialsToExpired", (fromId, toId) ->
+                userRepository.setCredentialsToExpired(now, fromId, toId));
+        }
+
+        // Find users whose credentials expiration date is less than the current date, one chunk of ids (and one transaction) at a time
+        return chunkProcessor.processInKeysetChunks("setCredentialsToExpired",
+            (lastId, limit) -> userRepository.findCredentialsExpirationDateLessThan(now, lastId, limit),
+            userIds -> entityBatchWriter.update(userRepository, userIds, user -> {
+                // Set the credentials to expire
+                user.setCredentialsNonExpired(false);
+                user.setUpdatedBy("System");
+                user.setUpdatedDate(now);
+            }));
+    }
+
     @Override
-    @Transactional
-    public void sendEmailToUsersWithExpiredAccounts() {
+    public int sendEmailToUsersWithExpiredAccounts() {
         try {
-            // Find users whose accounts have expired
-            userRepository.findExpiredAccount().forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
-
-                if (!user.getEmail().isEmpty()) {
-                    // Send an email to the user
-                    System.out.println("Sending email to user with expired account: " + user.getEmail());
-
-                    // Process the email sending here ...
-                    // You can use JavaMailSender or other email sending libraries
-                    // Async email sending is recommended to avoid blocking the main thread
-                }
-            });
+            // Find users whose accounts have expired, one chunk at a time in a short read-only transaction,
+            // then queue the notifications outside of that transaction
+            return chunkProcessor.readInKeysetChunks("sendEmailToUsersWithExpiredAccounts",
+                userRepository::findExpiredAccount,
+                UserContact::getId,
+                users -> queueNotifications(users, NotificationType.EXPIRED_ACCOUNT));
         } catch (Exception e) {
             throw new RuntimeException("Error sending email to users with expired accounts", e);
         }
     }
 
     @Override
-    @Transactional
-    public void sendEmailToUsersWithExpiredCredentials() {
+    public int sendEmailToUsersWithExpiredCredentials() {
         try {
-            // Find users whose credentials have expired
-            userRepository.findExpiredCredentials().forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
-
-                if (!user.getEmail().isEmpty()) {
-                    // Send an email to the user
-                    System.out.println("Sending email to user with expired credentials: " + user.getEmail());
-
-                    // Process the email sending here ...
-                    // You can use JavaMailSender or other email sending libraries
-                    // Async email sending is recommended to avoid blocking the main thread
-                }
-            });
+            // Find users whose credentials have expired, one chunk at a time in a short read-only transaction,
+            // then queue the notifications outside of that transaction
+            return chunkProcessor.readInKeysetChunks("sendEmailToUsersWithExpiredCredentials",
+                userRepository::findExpiredCredentials,
+                UserContact::getId,
+                users -> queueNotifications(users, NotificationType.EXPIRED_CREDENTIALS));
         } catch (Exception e) {
             throw new RuntimeException("Error sending email to users with expired credentials", e);
         }
     }
 
     @Override
-    @Transactional
-    public void cleanUpExpiredAccounts() {
+    public int cleanUpExpiredAccounts() {
         try {
-            // Find users whose accounts have expired
-            userRepository.findUsersWithExpiredAccountsOlderThan(expiredAccountRetentionDays).forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
+            // An unfinished run is resumed from its checkpoint, with the cutoff of its first attempt
+            JobCheckpointRun run = jobCheckpointService.startRun("cleanUpExpiredAccounts", clock.instant(),
+                bulkUpdateEnabled ? chunkProcessor.getPartitionCount() : 1);
+            Instant now = run.getRunTime();
+            Instant expirationCutoff = cutoff(now, businessPolicies.current().expiredAccountRetentionDays());
 
-                // Archive the user records if needed before deleting ..
+            int deletedUsers;
+            if (bulkUpdateEnabled) {
+                // Delete the users with one UPDATE per id range
+                deletedUsers = chunkProcessor.updateInIdRanges("cleanUpExpiredAccounts", userRepository.findMinId(), userRepository.findMaxId(),
+                    (fromId, toId) -> userRepository.deleteUsersWithAccountsExpiredBefore(now, expirationCutoff, fromId, toId),
+                    run);
+            } else {
+                deletedUsers = deleteUsersInKeysetChunks(run, now,
+                    (lastId, limit) -> userRepository.findUsersWithAccountsExpiredBefore(expirationCutoff, lastId, limit));
+            }
 
-                // Delete the user
-                user.setDeleted(true);
-                user.setUpdatedBy("System");
-                user.setUpdatedDate(Instant.now());
-                userRepository.save(user);
-            });
+            jobCheckpointService.finishRun(run);
+            return deletedUsers;
         } catch (Exception e) {
             throw new RuntimeException("Error cleaning up expired accounts", e);
         }
     }
 
     @Override
-    @Transactional
-    public void cleanUpExpiredCredentials() {
+    public int cleanUpExpiredCredentials() {
         try {
-            // Find users whose credentials have expired
-            userRepository.findUsersWithExpiredCredentialsOlderThan(expiredCredentialsRetentionDays).forEach(userId -> {
-                User user = userRepository.findById(userId).orElse(null);
+            // An unfinished run is resumed from its checkpoint, with the cutoff of its first attempt
+            JobCheckpointRun run = jobCheckpointService.startRun("cleanUpExpiredCredentials", clock.instant(),
+                bulkUpdateEnabled ? chunkProcessor.getPartitionCount() : 1);
+            Instant now = run.getRunTime();
+            Instant expirationCutoff = cutoff(now, businessPolicies.current().expiredCredentialsRetentionDays());
 
-                // Archive the user records if needed before deleting ..
+            int deletedUsers;
+            if (bulkUpdateEnabled) {
+                // Delete the users with one UPDATE per id range
+                deletedUsers = chunkProcessor.updateInIdRanges("cleanUpExpiredCredentials", userRepository.findMinId(), userRepository.findMaxId(),
+                    (fromId, toId) -> userRepository.deleteUsersWithCredentialsExpiredBefore(now, expirationCutoff, fromId, toId),
+                    run);
+            } else {
+                deletedUsers = deleteUsersInKeysetChunks(run, now,
+                    (lastId, limit) -> userRepository.findUsersWithCredentialsExpiredBefore(expirationCutoff, lastId, limit));
+            }
 
-                // Delete the user
-                user.setDeleted(true);
-                user.setUpdatedBy("System");
-                user.setUpdatedDate(Instant.now());
-                userRepository.save(user);
-            });
+            jobCheckpointService.finishRun(run);
+            return deletedUsers;
         } catch (Exception e) {
             throw new RuntimeException("Error cleaning up expired credentials", e);
         }
     }
+
+    @Override
+    public int purgeDeletedUsers() {
+        try {
+            // The users are only removed once they have been written to a verified archive file
+            return userArchiver.archiveAndPurge("purgeDeletedUsers", cutoff(clock.instant(), businessPolicies.current().deletedUserRetentionDays()));
+        } catch (Exception e) {
+            throw new RuntimeException("Error purging deleted users", e);
+        }
+    }
+
+    @Override
+    public int runLifecyclePass(Set<LifecycleTransition> transitions) {
+        try {
+            Instant now = clock.instant();
+            BusinessPolicy policy = businessPolicies.current();
+            LifecycleCutoffs cutoffs = new LifecycleCutoffs(now, cutoff(now, policy.allowedInactiveDays()),
+                cutoff(now, policy.expiredAccountRetentionDays()), cutoff(now, policy.expiredCredentialsRetentionDays()));
+            Map<LifecycleTransition, Integer> totals = new EnumMap<>(LifecycleTransition.class);
+
+            // Read the users once, one chunk at a time in a short read-only transaction, then write and notify every chunk
+            chunkProcessor.readInKeysetChunks("lifecyclePass",
+                userRepository::findLifecycleStates,
+                UserLifecycleState::getId,
+                users -> {
+                    LifecycleChunk chunk = new LifecycleChunk();
+                    users.forEach(user -> evaluateTransitions(user, transitions, cutoffs, chunk));
+                    writeLifecycleChunk(chunk, now).forEach((transition, rows) -> totals.merge(transition, rows, Integer::sum));
+                    chunk.notifications.forEach(notificationPipeline::submit);
+                });
+
+            logger.info("Lifecycle pass applied {}", totals);
+            return totals.entrySet().stream()
+                .filter(total -> total.getKey().isUpdate())
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+        } catch (Exception e) {
+            throw new RuntimeException("Error running the lifecycle pass", e);
+        }
+    }
+
+    // Evaluate the transitions of a user in the order of the jobs, each transition sees the state left by the previous ones,
+    // as the jobs do when they run one after the other on their crons
+    private static void evaluateTransitions(UserLifecycleState user, Set<LifecycleTransition> transitions, LifecycleCutoffs cutoffs,
+        LifecycleChunk chunk) {
+        Instant accountExpirationDate = user.getAccountExpirationDate();
+        boolean accountNonExpired = user.isAccountNonExpired();
+        boolean credentialsNonExpired = user.isCredentialsNonExpired();
+        boolean deleted = user.isDeleted();
+        boolean accountExpirationDateSet = false;
+
+        if (transitions.contains(LifecycleTransition.SET_ACCOUNT_EXPIRATION_DATE) && accountNonExpired
+            && user.getLastLogin() != null && !user.getLastLogin().isAfter(cutoffs.lastLoginCutoff())) {
+            chunk.add(LifecycleTransition.SET_ACCOUNT_EXPIRATION_DATE, user.getId());
+            accountExpirationDate = cutoffs.now();
+            accountExpirationDateSet = true;
+        }
+
+        // An expiration date set by this pass has passed by the time setAccountsToExpired would run
+        if (transitions.contains(LifecycleTransition.SET_ACCOUNTS_TO_EXPIRED) && accountNonExpired && accountExpirationDate != null
+            && (accountExpirationDateSet || accountExpirationDate.isBefore(cutoffs.now()))) {
+            chunk.add(LifecycleTransition.SET_ACCOUNTS_TO_EXPIRED, user.getId());
+            accountNonExpired = false;
+        }
+
+        if (transitions.contains(LifecycleTransition.SET_CREDENTIALS_TO_EXPIRED) && credentialsNonExpired
+            && user.getCredentialsExpirationDate() != null && user.getCredentialsExpirationDate().isBefore(cutoffs.now())) {
+            chunk.add(LifecycleTransition.SET_CREDENTIALS_TO_EXPIRED, user.getId());
+            credentialsNonExpired = false;
+        }
+
+        if (user.getEmail() != null && !user.getEmail().isEmpty()) {
+            if (transitions.contains(LifecycleTransition.NOTIFY_EXPIRED_ACCOUNTS) && !accountNonExpired) {
+                chunk.notify(user, NotificationType.EXPIRED_ACCOUNT, LifecycleTransition.NOTIFY_EXPIRED_ACCOUNTS);
+            }
+            if (transitions.contains(LifecycleTransition.NOTIFY_EXPIRED_CREDENTIALS) && !credentialsNonExpired) {
+                chunk.notify(user, NotificationType.EXPIRED_CREDENTIALS, LifecycleTransition.NOTIFY_EXPIRED_CREDENTIALS);
+            }
+        }
+
+        // A user that is already deleted is not deleted again
+        if (!deleted && transitions.contains(LifecycleTransition.CLEAN_UP_EXPIRED_ACCOUNTS) && !accountNonExpired
+            && accountExpirationDate != null && !accountExpirationDate.isAfter(cutoffs.expiredAccountCutoff())) {
+            chunk.add(LifecycleTransition.CLEAN_UP_EXPIRED_ACCOUNTS, user.getId());
+            deleted = true;
+        }
+
+        if (!deleted && transitions.contains(LifecycleTransition.CLEAN_UP_EXPIRED_CREDENTIALS) && !credentialsNonExpired
+            && user.getCredentialsExpirationDate() != null
+            && !user.getCredentialsExpirationDate().isAfter(cutoffs.expiredCredentialsCutoff())) {
+            chunk.add(LifecycleTransition.CLEAN_UP_EXPIRED_CREDENTIALS, user.getId());
+        }
+    }
+
+    // Write the transitions of a chunk in a single transaction, one update by ids per transition, returns the rows updated per transition
+    private Map<LifecycleTransition, Integer> writeLifecycleChunk(LifecycleChunk chunk, Instant now) {
+        Map<LifecycleTransition, Integer> updatedRows = new EnumMap<>(LifecycleTransition.class);
+        if (chunk.userIds.isEmpty()) {
+            chunk.notificationCounts.forEach(updatedRows::put);
+            return updatedRows;
+        }
+
+        chunkProcessor.writeChunk("lifecyclePass", () -> {
+            chunk.userIds.forEach((transition, userIds) -> {
+                updatedRows.put(transition, switch (transition) {
+                    case SET_ACCOUNT_EXPIRATION_DATE -> userRepository.setAccountExpirationDateByIds(now, userIds);
+                    case SET_ACCOUNTS_TO_EXPIRED -> userRepository.setAccountsToExpiredByIds(now, userIds);
+                    case SET_CREDENTIALS_TO_EXPIRED -> userRepository.setCredentialsToExpiredByIds(now, userIds);
+                    case CLEAN_UP_EXPIRED_ACCOUNTS, CLEAN_UP_EXPIRED_CREDENTIALS -> userRepository.deleteUsersByIds(now, userIds);
+                    default -> throw new IllegalStateException("Unexpected lifecycle transition " + transition);
+                });
+            });
+            return updatedRows.values().stream().mapToInt(Integer::intValue).sum();
+        });
+
+        chunk.notificationCounts.forEach((transition, count) -> updatedRows.merge(transition, count, Integer::sum));
+        return updatedRows;
+    }
+
+    // Latest timestamp that is more than the given number of full days before now: a timestamp t is older than that number of days
+    // (EXTRACT(DAY FROM (now - t)) > days) exactly when t <= cutoff, which lets the queries compare the indexed column with a constant
+    private static Instant cutoff(Instant now, int days) {
+        return now.minus(Duration.ofDays(days + 1L));
+    }
+
+    // Find the users to delete, one chunk of ids (and one transaction) at a time, and delete them through the entity
+    private int deleteUsersInKeysetChunks(JobCheckpointRun run, Instant now, ChunkProcessor.KeysetPageQuery pageQuery) {
+        return chunkProcessor.processInKeysetChunks(run.getJobName(), pageQuery,
+            userIds -> entityBatchWriter.update(userRepository, userIds, user -> {
+                // Delete the user, it is archived and removed by purgeDeletedUsers once the retention of deleted users has passed
+                user.setDeleted(true);
+                user.setUpdatedBy("System");
+                user.setUpdatedDate(now);
+            }), run);
+    }
+
+    // Apply a set-based update to the whole users table, one id range (and one transaction) at a time
+    private int updateAllUsersInIdRanges(String jobName, ChunkProcessor.IdRangeUpdate update) {
+        return chunkProcessor.updateInIdRanges(jobName, userRepository.findMinId(), userRepository.findMaxId(), update);
+    }
+
+    // Queue a notification for every user that has an email address, the NotificationPipeline sends them asynchronously
+    private void queueNotifications(List<UserContact> users, NotificationType type) {
+        users.stream()
+            .filter(user -> !user.getEmail().isEmpty())
+            .forEach(user -> notificationPipeline.submit(
+                new NotificationRecord(user.getId(), user.getEmail(), user.getUserName(), type)));
+    }
+
+    // Cutoffs of a lifecycle pass, computed once from the time the pass started
+    private record LifecycleCutoffs(Instant now, Instant lastLoginCutoff, Instant expiredAccountCutoff, Instant expiredCredentialsCutoff) {
+    }
+
+    // Ids to update per transition and notifications to queue for a chunk of users of the lifecycle pass
+    private static final class LifecycleChunk {
+
+        private final Map<LifecycleTransition, List<Long>> userIds = new EnumMap<>(LifecycleTransition.class);
+
+        private final Map<LifecycleTransition, Integer> notificationCounts = new EnumMap<>(LifecycleTransition.class);
+
+        private final List<NotificationRecord> notifications = new ArrayList<>();
+
+        void add(LifecycleTransition transition, long userId) {
+            userIds.computeIfAbsent(transition, key -> new ArrayList<>()).add(userId);
+        }
+
+        void notify(UserLifecycleState user, NotificationType type, LifecycleTransition transition) {
+            notifications.add(new NotificationRecord(user.getId(), user.getEmail(), user.getUserName(), type));
+            notificationCounts.merge(transition, 1, Integer::sum);
+        }
+    }
 }
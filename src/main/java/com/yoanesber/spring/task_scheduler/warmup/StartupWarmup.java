@@ -0,0 +1,160 @@
+package com.yoanesber.spring.task_scheduler.warmup;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/*
+*   Warmup run once the application has started, before it reports ready and before the misfired jobs are recovered,
+*   so the first job run after a deploy does not pay the cold start:
+*   - the connection pool is filled: the minimum idle connections of the pool (or scheduler.warmup.connections) are opened at once
+*   - every read-only @Query method of the repositories is run once with arguments that match no row (ids 0, limit 0), so Hibernate
+*     parses and caches the queries and the JDBC driver and the database see the statements. The @Modifying methods are skipped:
+*     an Instant argument cannot be chosen to match no row of every write (e.g. deleteStartedBefore), and a write would lock
+*     the rows it matches until the rollback.
+*   A failed warmup is only logged, the jobs then pay the cold start themselves.
+*/
+@Component
+public class StartupWarmup {
+
+    private final DataSource dataSource;
+
+    private final List<Repository<?, ?>> repositories;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Clock clock;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Value("${scheduler.warmup.enabled:true}")
+    private boolean enabled;
+
+    // Number of connections opened by the warmup, 0 uses the minimum idle connections of the pool
+    @Value("${scheduler.warmup.connections:0}")
+    private int connections;
+
+    public StartupWarmup(DataSource dataSource, List<Repository<?, ?>> repositories, TransactionTemplate transactionTemplate, Clock clock) {
+        this.dataSource = dataSource;
+        this.repositories = repositories;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            int openedConnections = primeConnectionPool();
+            int preparedQueries = prepareQueries();
+
+            logger.info("Warmup opened {} connections and prepared {} queries in {} ms", openedConnections, preparedQueries,
+                (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Exception while warming up with message: {}", e.getMessage());
+        }
+    }
+
+    // Open the connections at the same time, so the pool has to create them now instead of during the first job run
+    int primeConnectionPool() throws SQLException {
+        int count = connections;
+        if (count <= 0) {
+            count = dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class).getMinimumIdle() : 1;
+        }
+
+        List<Connection> opened = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                Connection connection = dataSource.getConnection();
+                opened.add(connection);
+                connection.isValid(5);
+            }
+            return opened.size();
+        } finally {
+            for (Connection connection : opened) {
+                connection.close();
+            }
+        }
+    }
+
+    // Run every read-only @Query method once in a transaction that is rolled back, returns the number of queries run
+    int prepareQueries() {
+        Integer preparedQueries = transactionTemplate.execute(status -> {
+            Instant now = clock.instant();
+            int count = 0;
+            for (Repository<?, ?> repository : repositories) {
+                for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(repository)) {
+                    for (Method method : repositoryInterface.getDeclaredMethods()) {
+                        Object[] arguments = method.isAnnotationPresent(Query.class) && !method.isAnnotationPresent(Modifying.class)
+                            ? arguments(method, now)
+                            : null;
+                        if (arguments != null) {
+                            invoke(repository, method, arguments);
+                            count++;
+                        }
+                    }
+                }
+            }
+
+            status.setRollbackOnly();
+            return count;
+        });
+
+        return preparedQueries == null ? 0 : preparedQueries;
+    }
+
+    // Arguments that match no row, or null if the method has a parameter of another type (e.g. the name of a lock)
+    private static Object[] arguments(Method method, Instant now) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Object[] arguments = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> type = parameterTypes[i];
+            if (type == Instant.class) {
+                arguments[i] = now;
+            } else if (type == long.class || type == Long.class) {
+                arguments[i] = 0L;
+            } else if (type == int.class || type == Integer.class) {
+                arguments[i] = 0;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                arguments[i] = List.of(0L);
+            } else {
+                return null;
+            }
+        }
+
+        return arguments;
+    }
+
+    private static void invoke(Repository<?, ?> repository, Method method, Object[] arguments) {
+        try {
+            method.invoke(repository, arguments);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Warmup of " + method.getName() + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+-- Users table for the in-memory database of the tests
+CREATE TABLE IF NOT EXISTS users
+(
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    username character varying(20) NOT NULL,
+    password character varying(150) NOT NULL,
+    email character varying(100) NOT NULL,
+    firstname character varying(20) NOT NULL,
+    lastname character varying(20),
+    is_enabled boolean DEFAULT false NOT NULL,
+    is_account_non_expired boolean DEFAULT false NOT NULL,
+    is_account_non_locked boolean DEFAULT false NOT NULL,
+    is_credentials_non_expired boolean DEFAULT false NOT NULL,
+    is_deleted boolean DEFAULT false NOT NULL,
+    account_expiration_date timestamp(6) with time zone,
+    credentials_expiration_date timestamp(6) with time zone,
+    last_login timestamp(6) with time zone,
+    user_type character varying(15) NOT NULL,
+    created_by character varying(20) NOT NULL,
+    created_date timestamp(6) with time zone DEFAULT now() NOT NULL,
+    updated_by character varying(20) NOT NULL,
+    updated_date timestamp(6) with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT users_unique_username UNIQUE (username),
+    CONSTRAINT users_unique_email UNIQUE (email)
+);
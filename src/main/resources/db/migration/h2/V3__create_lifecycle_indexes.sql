@@ -0,0 +1,6 @@
+-- H2 has no partial indexes, one plain index per column stands in for the partial indexes of the PostgreSQL migration
+CREATE INDEX IF NOT EXISTS users_last_login_idx ON users (last_login);
+
+CREATE INDEX IF NOT EXISTS users_account_expiration_idx ON users (account_expiration_date);
+
+CREATE INDEX IF NOT EXISTS users_credentials_expiration_idx ON users (credentials_expiration_date);
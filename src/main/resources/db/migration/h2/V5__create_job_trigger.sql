@@ -0,0 +1,7 @@
+-- Last fire time of every scheduled job, used to detect the executions missed while the application was down
+CREATE TABLE IF NOT EXISTS job_trigger
+(
+    job_name character varying(100) NOT NULL,
+    last_fired_date timestamp with time zone NOT NULL,
+    CONSTRAINT job_trigger_pkey PRIMARY KEY (job_name)
+);
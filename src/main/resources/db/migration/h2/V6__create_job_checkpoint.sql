@@ -0,0 +1,16 @@
+-- Progress of the unfinished run of every resumable job, one row per partition of the run
+CREATE TABLE IF NOT EXISTS job_checkpoint
+(
+    name character varying(120) NOT NULL,
+    job_name character varying(100) NOT NULL,
+    partition_index integer NOT NULL,
+    partition_count integer NOT NULL,
+    run_time timestamp with time zone NOT NULL,
+    last_id bigint NOT NULL,
+    processed_rows bigint NOT NULL,
+    completed boolean NOT NULL,
+    updated_date timestamp with time zone NOT NULL,
+    CONSTRAINT job_checkpoint_pkey PRIMARY KEY (name)
+);
+
+CREATE INDEX IF NOT EXISTS job_checkpoint_job_name_idx ON job_checkpoint (job_name);
@@ -0,0 +1,26 @@
+-- Users table, the same DDL as in the README. Existing databases are baselined at this version, so this script only runs on an empty schema
+CREATE TABLE IF NOT EXISTS users
+(
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY ( INCREMENT 1 START 1 MINVALUE 1 MAXVALUE 9223372036854775807 CACHE 1 ),
+    username character varying(20) COLLATE pg_catalog."default" NOT NULL,
+    password character varying(150) COLLATE pg_catalog."default" NOT NULL,
+    email character varying(100) COLLATE pg_catalog."default" NOT NULL,
+    firstname character varying(20) COLLATE pg_catalog."default" NOT NULL,
+    lastname character varying(20) COLLATE pg_catalog."default",
+    is_enabled boolean NOT NULL DEFAULT false,
+    is_account_non_expired boolean NOT NULL DEFAULT false,
+    is_account_non_locked boolean NOT NULL DEFAULT false,
+    is_credentials_non_expired boolean NOT NULL DEFAULT false,
+    is_deleted boolean NOT NULL DEFAULT false,
+    account_expiration_date timestamp with time zone,
+    credentials_expiration_date timestamp with time zone,
+    last_login timestamp with time zone,
+    user_type character varying(15) COLLATE pg_catalog."default" NOT NULL,
+    created_by character varying(20) NOT NULL,
+    created_date timestamp with time zone NOT NULL DEFAULT now(),
+    updated_by character varying(20) NOT NULL,
+    updated_date timestamp with time zone NOT NULL DEFAULT now(),
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT users_unique_username UNIQUE (username),
+    CONSTRAINT users_unique_email UNIQUE (email)
+);
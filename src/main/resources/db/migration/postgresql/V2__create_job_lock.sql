@@ -0,0 +1,9 @@
+-- Cluster-wide job locks (scheduler.lock.enabled=true)
+CREATE TABLE IF NOT EXISTS job_lock
+(
+    name character varying(100) NOT NULL,
+    locked_by character varying(100) NOT NULL,
+    locked_at timestamp with time zone NOT NULL,
+    locked_until timestamp with time zone NOT NULL,
+    CONSTRAINT job_lock_pkey PRIMARY KEY (name)
+);
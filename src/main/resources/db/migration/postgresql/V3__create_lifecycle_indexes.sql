@@ -0,0 +1,28 @@
+-- Partial indexes backing the lifecycle jobs. Each index only holds the rows a job can still act on,
+-- and its WHERE clause repeats the flag predicate of the job queries so the planner can use it.
+-- The indexes are built concurrently (Flyway runs this script outside of a transaction), so the users table stays writable.
+
+-- setAccountExpirationDate: last_login <= :lastLoginCutoff and is_account_non_expired
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_active_last_login_idx
+    ON users (last_login)
+    WHERE is_account_non_expired;
+
+-- setAccountsToExpired: is_account_non_expired and account_expiration_date < :now
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_active_account_expiration_idx
+    ON users (account_expiration_date)
+    WHERE is_account_non_expired;
+
+-- setCredentialsToExpired: is_credentials_non_expired and credentials_expiration_date < :now
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_active_credentials_expiration_idx
+    ON users (credentials_expiration_date)
+    WHERE is_credentials_non_expired;
+
+-- cleanUpExpiredAccounts: is_account_non_expired = false and account_expiration_date <= :expirationCutoff
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_expired_account_expiration_idx
+    ON users (account_expiration_date)
+    WHERE is_account_non_expired = false;
+
+-- cleanUpExpiredCredentials: is_credentials_non_expired = false and credentials_expiration_date <= :expirationCutoff
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_expired_credentials_expiration_idx
+    ON users (credentials_expiration_date)
+    WHERE is_credentials_non_expired = false;
@@ -0,0 +1,8 @@
+-- Watermarks of the incremental jobs (scheduler.watermark.enabled=true)
+CREATE TABLE IF NOT EXISTS job_watermark
+(
+    job_name character varying(100) NOT NULL,
+    watermark timestamp with time zone NOT NULL,
+    updated_date timestamp with time zone NOT NULL,
+    CONSTRAINT job_watermark_pkey PRIMARY KEY (job_name)
+);
@@ -0,0 +1,17 @@
+-- Journal of the job runs, one row per run, written asynchronously in batches
+CREATE TABLE IF NOT EXISTS job_execution
+(
+    run_id character varying(36) NOT NULL,
+    job_name character varying(100) NOT NULL,
+    node_id character varying(255) NOT NULL,
+    scheduled_start timestamp(6) with time zone NOT NULL,
+    actual_start timestamp(6) with time zone NOT NULL,
+    duration_ms bigint NOT NULL,
+    rows_affected bigint NOT NULL,
+    outcome character varying(10) NOT NULL,
+    error character varying(1000),
+    CONSTRAINT job_execution_pkey PRIMARY KEY (run_id)
+);
+
+CREATE INDEX IF NOT EXISTS job_execution_job_name_actual_start_idx ON job_execution (job_name, actual_start);
+CREATE INDEX IF NOT EXISTS job_execution_actual_start_idx ON job_execution (actual_start);
@@ -0,0 +1,161 @@
+package com.yoanesber.spring.task_scheduler.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.spring.task_scheduler.batch.JobGuard;
+import com.yoanesber.spring.task_scheduler.batch.JobStoppedException;
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+
+@SpringBootTest
+class UserArchiverTests {
+
+    @Autowired
+    private UserArchiver userArchiver;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobGuard jobGuard;
+
+    @TempDir
+    private Path archiveDirectory;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        ReflectionTestUtils.setField(userArchiver, "directory", archiveDirectory.toString());
+    }
+
+    @Test
+    void archivesThenPurgesTheUsersDeletedBeforeTheCutoff() throws IOException {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(Duration.ofDays(30));
+
+        // 250 users deleted 40 days ago (3 chunks of 100 ids), 5 deleted yesterday and 5 still active
+        List<Long> purgedIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            purgedIds.add(save(i == 0 ? "quoted, \"multi\"\nline" : "purged" + i, true, now.minus(Duration.ofDays(40))));
+        }
+        for (int i = 0; i < 5; i++) {
+            save("recent" + i, true, now.minus(Duration.ofDays(1)));
+            save("active" + i, false, now.minus(Duration.ofDays(40)));
+        }
+
+        assertThat(userArchiver.archiveAndPurge("purgeDeletedUsers", cutoff)).isEqualTo(250);
+
+        assertThat(userRepository.findAll())
+            .hasSize(10)
+            .allMatch(user -> user.getUserName().startsWith("recent") || user.getUserName().startsWith("active"));
+
+        Path archive;
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            archive = files.findFirst().orElseThrow();
+        }
+        assertThat(archive.getFileName().toString()).startsWith("users-").endsWith(".csv.gz");
+
+        List<Long> archivedIds = new ArrayList<>();
+        assertThat(UserArchiver.forEachArchivedId(archive, archivedIds::add)).isEqualTo(250);
+        assertThat(archivedIds).isEqualTo(purgedIds);
+
+        String content;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertThat(content)
+            .startsWith(UserArchiver.COLUMNS.replace(" ", "") + "\n")
+            .contains("\"quoted, \"\"multi\"\"\nline\"")
+            .doesNotContain("password");
+    }
+
+    @Test
+    void writesNoArchiveWhenNoUserIsDue() throws IOException {
+        save("recent", true, Instant.now().minus(Duration.ofDays(1)));
+
+        assertThat(userArchiver.archiveAndPurge("purgeDeletedUsers", Instant.now().minus(Duration.ofDays(30)))).isZero();
+        assertThat(userRepository.count()).isEqualTo(1);
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void failedExportLeavesNoPartialFile() throws IOException {
+        save("purged", true, Instant.now().minus(Duration.ofDays(40)));
+
+        // The lease of the job is lost before the first range is exported
+        jobGuard.register("purge-run", new JobLease() {
+            @Override
+            public String getName() {
+                return "purgeDeletedUsers";
+            }
+
+            @Override
+            public boolean isHeld() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        try {
+            assertThatThrownBy(() -> userArchiver.archiveAndPurge("purgeDeletedUsers", Instant.now().minus(Duration.ofDays(30))))
+                .isInstanceOf(JobStoppedException.class);
+        } finally {
+            jobGuard.unregister("purge-run");
+        }
+
+        assertThat(userRepository.count()).isEqualTo(1);
+        try (Stream<Path> files = Files.list(archiveDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private long save(String userName, boolean deleted, Instant updatedDate) {
+        User user = new User();
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(userName + "@youremail.com");
+        user.setFirstName(userName);
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setDeleted(deleted);
+        user.setUserType("USER_ACCOUNT");
+        user.setCreatedBy("system");
+        user.setUpdatedBy("system");
+        long id = userRepository.save(user).getId();
+
+        jdbcTemplate.update("update users set updated_date = ? where id = ?", updatedDate.atOffset(ZoneOffset.UTC), id);
+        return id;
+    }
+}
@@ -0,0 +1,73 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+class ChunkThrottleTests {
+
+    @Autowired
+    private ChunkProcessor chunkProcessor;
+
+    @Autowired
+    private ChunkThrottle chunkThrottle;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chunkThrottle, "enabled", true);
+        ReflectionTestUtils.setField(chunkThrottle, "maxPauseMillis", 20L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(chunkThrottle, "enabled", false);
+    }
+
+    @Test
+    void chunksShrinkWhileTheDatabaseIsOverTheLatencyBudget() {
+        // Every chunk is over a negative budget
+        ReflectionTestUtils.setField(chunkThrottle, "latencyBudgetMillis", -1L);
+
+        // The chunk size of the tests is 100, the minimum chunk size 50
+        assertThat(readChunks("busyJob", 4)).containsExactly(100, 50, 50, 50);
+        assertThat(meterRegistry.get("scheduler.throttle.pause").tag("job", "busyJob").gauge().value()).isEqualTo(20);
+    }
+
+    @Test
+    void chunksGrowWhileTheDatabaseIsWithinTheLatencyBudget() {
+        ReflectionTestUtils.setField(chunkThrottle, "latencyBudgetMillis", 10_000L);
+
+        assertThat(readChunks("idleJob", 4)).containsExactly(100, 110, 120, 130);
+        assertThat(meterRegistry.get("scheduler.throttle.pause").tag("job", "idleJob").gauge().value()).isZero();
+        assertThat(meterRegistry.get("scheduler.throttle.throughput").tag("job", "idleJob").gauge().value()).isPositive();
+    }
+
+    // Walk chunkCount full keyset chunks of ids, returns the limit every chunk was read with
+    private List<Integer> readChunks(String jobName, int chunkCount) {
+        List<Integer> limits = new ArrayList<>();
+        chunkProcessor.processInKeysetChunks(jobName, (lastId, limit) -> {
+            if (limits.size() == chunkCount) {
+                return List.of();
+            }
+            limits.add(limit);
+            return LongStream.rangeClosed(lastId + 1, lastId + limit).boxed().toList();
+        }, userIds -> { });
+
+        return limits;
+    }
+}
@@ -0,0 +1,90 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@SpringBootTest
+class EntityBatchWriterTests {
+
+    @Autowired
+    private EntityBatchWriter entityBatchWriter;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    void insertAllAndUpdateSendJdbcBatches() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            users.add(newUser("user" + i));
+        }
+        assertThat(userRepository.insertAll(users)).isEqualTo(120);
+
+        List<Long> userIds = userRepository.findAll().stream().map(User::getId).toList();
+        assertThat(userIds).hasSize(120);
+
+        // 120 users with the default batch size of 50: 3 selects and 3 JDBC batches of UPDATEs instead of 120 of each
+        statistics.clear();
+        Instant now = Instant.now();
+        Integer updatedUsers = transactionTemplate.execute(status ->
+            entityBatchWriter.update(userRepository, userIds, user -> user.setAccountExpirationDate(now)));
+
+        assertThat(updatedUsers).isEqualTo(120);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(120);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(6);
+        assertThat(userRepository.findAll()).allMatch(user -> user.getAccountExpirationDate() != null);
+    }
+
+    private static User newUser(String userName) {
+        User user = new User();
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(userName + "@youremail.com");
+        user.setFirstName(userName);
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setUserType("USER_ACCOUNT");
+        user.setCreatedBy("system");
+        user.setUpdatedBy("system");
+        return user;
+    }
+}
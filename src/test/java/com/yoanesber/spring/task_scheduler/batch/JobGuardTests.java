@@ -0,0 +1,59 @@
+package com.yoanesber.spring.task_scheduler.batch;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+
+@SpringBootTest
+class JobGuardTests {
+
+    @Autowired
+    private JobGuard jobGuard;
+
+    @Autowired
+    private ChunkProcessor chunkProcessor;
+
+    @Test
+    void parallelRunsOfAJobKeepTheirOwnLease() {
+        // Two parallel runs of the same job: the lease of the second run is lost while the first run completes
+        jobGuard.register("run-2", new JobLease() {
+            @Override
+            public String getName() {
+                return "parallelJob";
+            }
+
+            @Override
+            public boolean isHeld() {
+                return false;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        try {
+            CompletableFuture.runAsync(() -> {
+                jobGuard.register("run-1", JobLease.UNLOCKED);
+                try {
+                    assertThatCode(() -> jobGuard.checkpoint("parallelJob")).doesNotThrowAnyException();
+                } finally {
+                    jobGuard.unregister("run-1");
+                }
+            }).join();
+
+            // The partitions of the second run still see its lost lease
+            assertThatThrownBy(() -> chunkProcessor.updateInIdRanges("parallelJob", 1, 1000, (fromId, toId) -> 0))
+                .isInstanceOf(JobStoppedException.class)
+                .hasMessageContaining("lock parallelJob has been lost");
+        } finally {
+            jobGuard.unregister("run-2");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.yoanesber.spring.task_scheduler.expiration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+
+@SpringBootTest
+class ExpirationIndexTests {
+
+    @Autowired
+    private ExpirationIndex expirationIndex;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        ReflectionTestUtils.setField(expirationIndex, "batchSize", 2);
+    }
+
+    @Test
+    void expiresDueUsersInBatches() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 3; i++) {
+            userRepository.save(newUser("due" + i, now.minus(Duration.ofMinutes(i + 1)), null));
+        }
+        userRepository.save(newUser("upcoming", now.plus(Duration.ofHours(1)), now.minus(Duration.ofMinutes(1))));
+        expirationIndex.reload();
+
+        // 3 due accounts and 1 due credentials, at most 2 of each per tick
+        assertThat(expirationIndex.expireDueUsers()).isEqualTo(3);
+        assertThat(expirationIndex.expireDueUsers()).isEqualTo(1);
+        assertThat(expirationIndex.expireDueUsers()).isZero();
+
+        assertThat(userRepository.findAll())
+            .allMatch(user -> user.isAccountNonExpired() == user.getUserName().equals("upcoming"))
+            .allMatch(user -> user.isCredentialsNonExpired() != user.getUserName().equals("upcoming"));
+    }
+
+    @Test
+    void staleEntryDoesNotExpireTheUser() {
+        User user = userRepository.save(newUser("user", Instant.now().minus(Duration.ofMinutes(1)), null));
+        expirationIndex.reload();
+
+        // The expiration date is moved after the index has been loaded
+        user.setAccountExpirationDate(Instant.now().plus(Duration.ofDays(30)));
+        userRepository.save(user);
+
+        assertThat(expirationIndex.expireDueUsers()).isZero();
+        assertThat(userRepository.findById(user.getId()).orElseThrow().isAccountNonExpired()).isTrue();
+    }
+
+    @Test
+    void heapReturnsUsersInExpirationOrder() {
+        ExpirationHeap heap = new ExpirationHeap(1);
+        long[] expirationTimes = {50, 10, 40, 10, 30, 20};
+        for (int i = 0; i < expirationTimes.length; i++) {
+            heap.add(expirationTimes[i], i);
+        }
+
+        long previous = Long.MIN_VALUE;
+        while (!heap.isEmpty()) {
+            long expirationTime = heap.peekExpirationTime();
+            long userId = heap.pollUserId();
+            assertThat(expirationTime).isGreaterThanOrEqualTo(previous).isEqualTo(expirationTimes[(int) userId]);
+            previous = expirationTime;
+        }
+    }
+
+    private static User newUser(String userName, Instant accountExpirationDate, Instant credentialsExpirationDate) {
+        User user = new User();
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(userName + "@youremail.com");
+        user.setFirstName(userName);
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setAccountExpirationDate(accountExpirationDate);
+        user.setCredentialsExpirationDate(credentialsExpirationDate);
+        user.setLastLogin(Instant.now());
+        user.setUserType("USER_ACCOUNT");
+        user.setCreatedBy("system");
+        user.setUpdatedBy("system");
+        return user;
+    }
+}
@@ -0,0 +1,82 @@
+package com.yoanesber.spring.task_scheduler.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.yoanesber.spring.task_scheduler.entity.JobExecution;
+import com.yoanesber.spring.task_scheduler.repository.JobExecutionRepository;
+import com.yoanesber.spring.task_scheduler.scheduler.JobRegistry;
+
+@SpringBootTest
+class JobJournalTests {
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private JobExecutionRepository jobExecutionRepository;
+
+    @Autowired
+    private ExecutionsEndpoint executionsEndpoint;
+
+    @BeforeEach
+    void setUp() {
+        jobExecutionRepository.deleteAll();
+    }
+
+    @Test
+    void runIsWrittenToTheJournalAsynchronously() throws InterruptedException {
+        jobRegistry.trigger("setAccountsToExpired");
+
+        List<JobExecution> executions = List.of();
+        for (int i = 0; i < 500 && executions.isEmpty(); i++) {
+            Thread.sleep(10);
+            executions = jobExecutionRepository.findTop20ByJobNameOrderByActualStartDesc("setAccountsToExpired");
+        }
+
+        assertThat(executions).singleElement().satisfies(execution -> {
+            assertThat(execution.getRunId()).hasSize(36);
+            assertThat(execution.getNodeId()).isNotBlank();
+            assertThat(execution.getScheduledStart()).isBeforeOrEqualTo(execution.getActualStart());
+            assertThat(execution.getOutcome()).isEqualTo(JobExecution.Outcome.SUCCESS);
+            assertThat(execution.getError()).isNull();
+        });
+    }
+
+    @Test
+    void endpointReportsTheDurationPercentilesOfTheSuccessfulRunsAndTheStoppedRunsApart() {
+        Instant now = Instant.now();
+        List<JobExecution> executions = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            executions.add(execution("job", now, i, JobExecution.Outcome.SUCCESS));
+        }
+        executions.add(execution("job", now, 5000, JobExecution.Outcome.FAILURE));
+        executions.add(execution("job", now, 3000, JobExecution.Outcome.STOPPED));
+        executions.add(execution("job", now, 4000, JobExecution.Outcome.STOPPED));
+        executions.add(execution("job", now, 0, JobExecution.Outcome.SKIPPED));
+        jobExecutionRepository.saveAll(executions);
+
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        JobDurationStats expected = new JobDurationStats("job", today, today, 103, 1, 2, 50L, 99L, 100L);
+
+        assertThat(executionsEndpoint.execution("job", 1).days()).containsExactly(expected);
+        assertThat(executionsEndpoint.execution("job", 1).latestRuns()).hasSize(20);
+        assertThat(executionsEndpoint.executions(1)).containsExactly(expected);
+    }
+
+    private static JobExecution execution(String jobName, Instant start, long durationMs, JobExecution.Outcome outcome) {
+        return new JobExecution(UUID.randomUUID().toString(), jobName, "node", start, start, durationMs, 0, outcome,
+            outcome == JobExecution.Outcome.FAILURE ? "failed" : null);
+    }
+}
@@ -0,0 +1,74 @@
+package com.yoanesber.spring.task_scheduler.policy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.service.UserService;
+
+@SpringBootTest
+class PolicyEndpointTests {
+
+    @Autowired
+    private PolicyEndpoint policyEndpoint;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        policyEndpoint.resetPolicy();
+    }
+
+    @Test
+    void updatedPolicyAppliesToTheNextRunWithoutRestart() {
+        assertThat(policyEndpoint.policy()).isEqualTo(new BusinessPolicy(3, 30, 30, 30));
+
+        User user = new User();
+        user.setUserName("user");
+        user.setPassword("password");
+        user.setEmail("user@youremail.com");
+        user.setFirstName("user");
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setLastLogin(Instant.now().minus(Duration.ofDays(10)));
+        user.setUserType("USER_ACCOUNT");
+        user.setCreatedBy("system");
+        user.setUpdatedBy("system");
+        userRepository.save(user);
+
+        // Inactive for 10 days, which is allowed once the policy allows 20 days, the other values are kept
+        assertThat(policyEndpoint.updatePolicy(20, null, null, null)).isEqualTo(new BusinessPolicy(20, 30, 30, 30));
+        assertThat(userService.setAccountExpirationDate()).isZero();
+
+        assertThat(policyEndpoint.resetPolicy()).isEqualTo(new BusinessPolicy(3, 30, 30, 30));
+        assertThat(userService.setAccountExpirationDate()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidPolicyIsRejected() {
+        assertThatThrownBy(() -> policyEndpoint.updatePolicy(null, -1, null, null)).isInstanceOf(InvalidEndpointRequestException.class);
+        assertThat(policyEndpoint.policy()).isEqualTo(new BusinessPolicy(3, 30, 30, 30));
+    }
+}
@@ -0,0 +1,100 @@
+package com.yoanesber.spring.task_scheduler.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+// Checks with EXPLAIN that the cutoff predicates of the UserRepository queries can be answered from the lifecycle indexes
+// created by db/migration/h2. The statements are read from the @Query annotations of the repository, without the keyset
+// and id range predicates and the ordering: H2 would pick the primary key for them.
+@SpringBootTest
+class UserRepositoryQueryPlanTests {
+
+    private static final Pattern ID_BOUND = Pattern.compile(":(lastId|fromId|toId)\\b");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SyntheticUsers.reseed(jdbcTemplate, 2000);
+        jdbcTemplate.execute("analyze");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "findUsersLastLoggedInBefore, users_last_login_idx",
+        "setAccountExpirationDateOfInactiveUsers, users_last_login_idx",
+        "findAccountExpirationDateLessThan, users_account_expiration_idx",
+        "findAccountExpirationDateBetween, users_account_expiration_idx",
+        "setAccountsToExpired, users_account_expiration_idx",
+        "findCredentialsExpirationDateLessThan, users_credentials_expiration_idx",
+        "findCredentialsExpirationDateBetween, users_credentials_expiration_idx",
+        "setCredentialsToExpired, users_credentials_expiration_idx",
+        "findUsersWithAccountsExpiredBefore, users_account_expiration_idx",
+        "deleteUsersWithAccountsExpiredBefore, users_account_expiration_idx",
+        "findUsersWithCredentialsExpiredBefore, users_credentials_expiration_idx",
+        "deleteUsersWithCredentialsExpiredBefore, users_credentials_expiration_idx"
+    })
+    void cutoffPredicateUsesIndex(String queryMethod, String index) {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(Duration.ofDays(31)));
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+            .addValue("now", cutoff)
+            .addValue("since", Timestamp.from(cutoff.toInstant().minus(Duration.ofDays(1))))
+            .addValue("lastLoginCutoff", cutoff)
+            .addValue("expirationCutoff", cutoff);
+
+        assertThat(explain(cutoffPredicatesOf(queryMethod), parameters))
+            .contains(index)
+            .doesNotContain("tableScan");
+    }
+
+    @Test
+    void intervalPredicateScansTheWholeTable() {
+        // The predicate the cutoff replaced: the interval is computed for every row, so no index can be used
+        assertThat(explain("select id from users where EXTRACT(DAY FROM (NOW() - last_login)) > 3 and is_account_non_expired",
+            new MapSqlParameterSource()))
+            .contains("tableScan");
+    }
+
+    // The native query of the repository method, without the lines that bound the id and without the ordering
+    private String cutoffPredicatesOf(String queryMethod) {
+        Query query = Arrays.stream(UserRepository.class.getMethods())
+            .filter(method -> method.getName().equals(queryMethod))
+            .findFirst()
+            .orElseThrow()
+            .getAnnotation(Query.class);
+        assertThat(query.nativeQuery()).isTrue();
+
+        return query.value().lines()
+            .takeWhile(line -> !line.strip().startsWith("order by"))
+            .filter(line -> !ID_BOUND.matcher(line).find())
+            .collect(Collectors.joining("\n"))
+            .replaceFirst("where\\s+and", "where");
+    }
+
+    private String explain(String sql, MapSqlParameterSource parameters) {
+        return String.join("\n", namedParameterJdbcTemplate.queryForList("explain " + sql, parameters, String.class));
+    }
+}
@@ -0,0 +1,267 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.spring.task_scheduler.batch.ChunkProcessor;
+import com.yoanesber.spring.task_scheduler.entity.JobCheckpoint;
+import com.yoanesber.spring.task_scheduler.repository.JobCheckpointRepository;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.service.JobTriggerService;
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+@SpringBootTest
+class JobRegistryTests {
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private JobsEndpoint jobsEndpoint;
+
+    @Autowired
+    private JobTriggerService jobTriggerService;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private ChunkProcessor chunkProcessor;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void jobsAreRegisteredFromTheirCronProperties() {
+        // The crons of the tests are disabled, so the jobs are registered without a next execution
+        assertThat(jobRegistry.getJobs())
+            .extracting(JobInfo::name)
+            .contains("setAccountExpirationDate", "cleanUpExpiredCredentials")
+            .doesNotContain("lifecyclePass");
+        assertThat(jobRegistry.getJob("setAccountsToExpired")).get()
+            .satisfies(job -> assertThat(job.nextExecution()).isNull());
+    }
+
+    @Test
+    void jobIsPausedResumedRescheduledAndTriggered() throws InterruptedException {
+        CountDownLatch runs = new CountDownLatch(1);
+        jobRegistry.register("registryTestJob", JobClass.STATE_TRANSITION, JobSchedule.fixedRate(Duration.ofHours(1)), JobPolicy.DEFAULT,
+            false, runs::countDown);
+        assertThat(jobRegistry.getJob("registryTestJob").orElseThrow().nextExecution()).isNotNull();
+
+        JobInfo paused = jobRegistry.pause("registryTestJob");
+        assertThat(paused.paused()).isTrue();
+        assertThat(paused.nextExecution()).isNull();
+
+        // A paused job keeps its new schedule until it is resumed
+        assertThat(jobRegistry.reschedule("registryTestJob", JobSchedule.cron("0 0 3 * * ?")).nextExecution()).isNull();
+        JobInfo resumed = jobRegistry.resume("registryTestJob");
+        assertThat(resumed.schedule()).isEqualTo("cron 0 0 3 * * ?");
+        assertThat(resumed.nextExecution()).isNotNull();
+
+        jobsEndpoint.updateJob("registryTestJob", JobsEndpoint.Action.TRIGGER, null, null);
+        assertThat(runs.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void invalidRequestsAreRejected() {
+        assertThatThrownBy(() -> jobsEndpoint.updateJob("unknownJob", JobsEndpoint.Action.PAUSE, null, null))
+            .isInstanceOf(InvalidEndpointRequestException.class);
+        assertThatThrownBy(() -> jobsEndpoint.updateJob("setAccountsToExpired", JobsEndpoint.Action.RESCHEDULE, "not a cron", null))
+            .isInstanceOf(InvalidEndpointRequestException.class);
+        assertThatThrownBy(() -> jobsEndpoint.updateJob("setAccountsToExpired", JobsEndpoint.Action.RESCHEDULE, null, null))
+            .isInstanceOf(InvalidEndpointRequestException.class);
+    }
+
+    @Test
+    void executionsFiredWhileTheJobRunsAreSkippedOrQueued() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger skippingRuns = new AtomicInteger();
+        AtomicInteger queuingRuns = new AtomicInteger();
+        jobRegistry.register("skippingJob", JobClass.STATE_TRANSITION, JobSchedule.cron("-"), JobPolicy.DEFAULT, false,
+            () -> awaitRelease(skippingRuns, release));
+        jobRegistry.register("queuingJob", JobClass.MAINTENANCE, JobSchedule.cron("-"),
+            new JobPolicy(JobPolicy.ConcurrencyPolicy.QUEUE_ONE, JobPolicy.MisfirePolicy.SKIP), false, () -> awaitRelease(queuingRuns, release));
+
+        for (int i = 0; i < 3; i++) {
+            jobRegistry.trigger("skippingJob");
+            jobRegistry.trigger("queuingJob");
+        }
+        assertThat(jobRegistry.getJob("skippingJob").orElseThrow()).satisfies(job -> {
+            assertThat(job.runningRuns()).isEqualTo(1);
+            assertThat(job.queuedRuns()).isZero();
+        });
+        assertThat(jobRegistry.getJob("queuingJob").orElseThrow().queuedRuns()).isEqualTo(1);
+
+        // The queued run starts once the first run has completed
+        release.countDown();
+        awaitIdle("skippingJob");
+        awaitIdle("queuingJob");
+        assertThat(skippingRuns).hasValue(1);
+        assertThat(queuingRuns).hasValue(2);
+    }
+
+    @Test
+    void missedExecutionsAreCaughtUpOnStartup() throws InterruptedException {
+        AtomicInteger catchUpRuns = new AtomicInteger();
+        AtomicInteger fireOnceRuns = new AtomicInteger();
+        jobTriggerService.recordFired("catchUpJob", Instant.now().minus(Duration.ofMinutes(150)));
+        jobTriggerService.recordFired("fireOnceJob", Instant.now().minus(Duration.ofMinutes(150)));
+        jobRegistry.register("catchUpJob", JobClass.STATE_TRANSITION, JobSchedule.fixedRate(Duration.ofHours(1)),
+            new JobPolicy(JobPolicy.ConcurrencyPolicy.SKIP_IF_RUNNING, JobPolicy.MisfirePolicy.CATCH_UP), false, catchUpRuns::incrementAndGet);
+        jobRegistry.register("fireOnceJob", JobClass.STATE_TRANSITION, JobSchedule.fixedRate(Duration.ofHours(1)),
+            new JobPolicy(JobPolicy.ConcurrencyPolicy.SKIP_IF_RUNNING, JobPolicy.MisfirePolicy.FIRE_ONCE_NOW), false, fireOnceRuns::incrementAndGet);
+
+        jobRegistry.recoverMisfires();
+        awaitIdle("catchUpJob");
+        awaitIdle("fireOnceJob");
+
+        // Two executions were missed in the last 150 minutes
+        assertThat(catchUpRuns).hasValue(2);
+        assertThat(fireOnceRuns).hasValue(1);
+    }
+
+    @Test
+    void fullExecutorRejectsOnlyTheRunsOfItsOwnClass() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger notificationRuns = new AtomicInteger();
+        CountDownLatch stateTransitionRun = new CountDownLatch(1);
+        jobRegistry.register("parallelNotificationJob", JobClass.NOTIFICATION, JobSchedule.cron("-"),
+            new JobPolicy(JobPolicy.ConcurrencyPolicy.ALLOW_PARALLEL, JobPolicy.MisfirePolicy.SKIP), false,
+            () -> awaitRelease(notificationRuns, release));
+        jobRegistry.register("isolatedStateTransitionJob", JobClass.STATE_TRANSITION, JobSchedule.cron("-"), JobPolicy.DEFAULT, false,
+            stateTransitionRun::countDown);
+
+        // The notification executor has 1 thread and a queue of 10 runs, the 12th run is rejected
+        for (int i = 0; i < 12; i++) {
+            jobRegistry.trigger("parallelNotificationJob");
+        }
+        assertThat(jobRegistry.getJob("parallelNotificationJob").orElseThrow().runningRuns()).isEqualTo(11);
+
+        // The state transitions still run while the notification executor is saturated
+        jobRegistry.trigger("isolatedStateTransitionJob");
+        assertThat(stateTransitionRun.await(5, TimeUnit.SECONDS)).isTrue();
+
+        release.countDown();
+        awaitIdle("parallelNotificationJob");
+        assertThat(notificationRuns).hasValue(11);
+    }
+
+    @Test
+    void failedCleanUpIsResumedByTheRetry() throws InterruptedException {
+        seedExpiredAccounts(400);
+        long failFromId = userRepository.findMinId() + 200;
+
+        // The chunks holding the users from failFromId on cannot be committed, the first run fails half way
+        jdbcTemplate.execute("alter table users add constraint users_cleanup_fails check (not is_deleted or id < " + failFromId + ")");
+        jobRegistry.reschedule("cleanUpExpiredAccounts", JobSchedule.cron("0 0 3 1 1 ?"));
+        ReflectionTestUtils.setField(jobRegistry, "retryDelaySeconds", 2L);
+        try {
+            jobRegistry.trigger("cleanUpExpiredAccounts");
+            awaitIdle("cleanUpExpiredAccounts");
+            jdbcTemplate.execute("alter table users drop constraint users_cleanup_fails");
+            assertThat(jobCheckpointRepository.findByJobName("cleanUpExpiredAccounts")).isNotEmpty();
+            assertThat(deletedUsers()).isBetween(1, 399);
+
+            // The retry resumes the run: every user is deleted with the run time of the first attempt
+            awaitNoUnfinishedRun("cleanUpExpiredAccounts");
+            assertThat(deletedUsers()).isEqualTo(400);
+            assertThat(jdbcTemplate.queryForObject("select count(distinct updated_date) from users", Integer.class)).isEqualTo(1);
+        } finally {
+            jdbcTemplate.execute("alter table users drop constraint if exists users_cleanup_fails");
+            restoreCleanUp();
+        }
+    }
+
+    @Test
+    void unfinishedCleanUpIsResumedOnStartup() throws InterruptedException {
+        seedExpiredAccounts(400);
+
+        // A run stopped by the previous shutdown committed the first chunk of the id space (chunks of 100 ids)
+        long firstChunk = Math.floorDiv(userRepository.findMinId() - 1, 100);
+        int partitionCount = chunkProcessor.getPartitionCount();
+        int partition = (int) Math.floorMod(firstChunk, partitionCount);
+        long committedUpToId = (firstChunk + 1) * 100;
+        Instant runTime = Instant.now().minus(Duration.ofHours(1));
+        jobCheckpointRepository.save(new JobCheckpoint("cleanUpExpiredAccounts#partition-" + partition, "cleanUpExpiredAccounts",
+            partition, partitionCount, runTime, committedUpToId, 100, false, runTime));
+        jobRegistry.reschedule("cleanUpExpiredAccounts", JobSchedule.cron("0 0 3 1 1 ?"));
+        try {
+            jobRegistry.recoverMisfires();
+            awaitNoUnfinishedRun("cleanUpExpiredAccounts");
+
+            // Only the users after the checkpoint are deleted, by the resumed run
+            assertThat(userRepository.findAll()).anyMatch(user -> user.getId() <= committedUpToId).allMatch(user -> user.isDeleted() == (user.getId() > committedUpToId));
+        } finally {
+            restoreCleanUp();
+        }
+    }
+
+    // Users whose accounts expired 60 days ago, past the retention of the expired accounts
+    private void seedExpiredAccounts(int userCount) {
+        jdbcTemplate.update("delete from users");
+        jobCheckpointRepository.deleteAll();
+        SyntheticUsers.insert(jdbcTemplate, userCount, Instant.now());
+        jdbcTemplate.update("update users set is_account_non_expired = false, is_deleted = false, account_expiration_date = ?",
+            Timestamp.from(Instant.now().minus(Duration.ofDays(60))));
+    }
+
+    private int deletedUsers() {
+        return jdbcTemplate.queryForObject("select count(*) from users where is_deleted", Integer.class);
+    }
+
+    private void restoreCleanUp() throws InterruptedException {
+        jobRegistry.reschedule("cleanUpExpiredAccounts", JobSchedule.cron("-"));
+        ReflectionTestUtils.setField(jobRegistry, "retryDelaySeconds", 300L);
+        awaitIdle("cleanUpExpiredAccounts");
+        jobCheckpointRepository.deleteAll();
+        jdbcTemplate.update("delete from users");
+    }
+
+    private void awaitNoUnfinishedRun(String jobName) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            if (jobCheckpointRepository.findByJobName(jobName).isEmpty() && jobRegistry.getJob(jobName).orElseThrow().runningRuns() == 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError(jobName + " still has an unfinished run");
+    }
+
+    private static void awaitRelease(AtomicInteger runs, CountDownLatch release) {
+        runs.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitIdle(String jobName) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            JobInfo job = jobRegistry.getJob(jobName).orElseThrow();
+            if (job.runningRuns() == 0 && job.queuedRuns() == 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError(jobName + " is still running");
+    }
+}
@@ -0,0 +1,86 @@
+package com.yoanesber.spring.task_scheduler.scheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.yoanesber.spring.task_scheduler.batch.JobGuard;
+import com.yoanesber.spring.task_scheduler.batch.JobStoppedException;
+
+// The drain cannot be undone, so the test runs in its own application context
+@SpringBootTest(properties = "scheduler.shutdown.drain-timeout-seconds=5")
+@DirtiesContext
+class ShutdownDrainTests {
+
+    @Autowired
+    private JobRegistry jobRegistry;
+
+    @Autowired
+    private DrainEndpoint drainEndpoint;
+
+    @Autowired
+    private JobGuard jobGuard;
+
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+
+    @Autowired
+    private JobsEndpoint jobsEndpoint;
+
+    @Test
+    void runningJobStopsAtItsNextCheckpointAndNoRunStartsAfterTheDrain() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger chunks = new AtomicInteger();
+        AtomicReference<JobStoppedException> stopped = new AtomicReference<>();
+        jobRegistry.register("drainingJob", JobClass.MAINTENANCE, JobSchedule.cron("-"), JobPolicy.DEFAULT, false,
+            () -> runChunks("drainingJob", chunks, started, stopped));
+
+        jobRegistry.trigger("drainingJob");
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(drainEndpoint.status()).isEqualTo(new DrainStatus(false, List.of("drainingJob")));
+
+        // The drain returns once the job has stopped between two chunks
+        DrainStatus status = drainEndpoint.drain();
+        assertThat(status.draining()).isTrue();
+        assertThat(status.runningJobs()).isEmpty();
+        assertThat(stopped.get()).hasMessageContaining(ShutdownDrain.STOP_REASON);
+        assertThat(chunks.get()).isLessThan(1000);
+        assertThat(applicationAvailability.getReadinessState()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+
+        // A manual trigger is rejected instead of starting a run that would stop at once
+        assertThatThrownBy(() -> jobRegistry.trigger("drainingJob"))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("shutting down");
+        assertThatThrownBy(() -> jobsEndpoint.updateJob("drainingJob", JobsEndpoint.Action.TRIGGER, null, null))
+            .isInstanceOf(InvalidEndpointRequestException.class);
+        assertThat(jobRegistry.getJob("drainingJob").orElseThrow().runningRuns()).isZero();
+    }
+
+    private void runChunks(String jobName, AtomicInteger chunks, CountDownLatch started, AtomicReference<JobStoppedException> stopped) {
+        try {
+            for (int i = 0; i < 1000; i++) {
+                jobGuard.checkpoint(jobName);
+                chunks.incrementAndGet();
+                started.countDown();
+                Thread.sleep(10);
+            }
+        } catch (JobStoppedException e) {
+            stopped.set(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.spring.task_scheduler.entity.JobLock;
+import com.yoanesber.spring.task_scheduler.repository.JobLockRepository;
+import com.yoanesber.spring.task_scheduler.service.JobLease;
+import com.yoanesber.spring.task_scheduler.service.JobLockService;
+
+@SpringBootTest
+class JobLockServiceImplTests {
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @BeforeEach
+    void setUp() {
+        jobLockRepository.deleteAll();
+        Object target = AopTestUtils.getUltimateTargetObject(jobLockService);
+        ReflectionTestUtils.setField(target, "lockEnabled", true);
+        ReflectionTestUtils.setField(target, "minHoldSeconds", 0L);
+    }
+
+    @Test
+    void lockIsHeldUntilTheLeaseIsClosed() {
+        Optional<JobLease> lease = jobLockService.tryAcquire("job");
+        assertThat(lease).isPresent();
+        assertThat(lease.get().isHeld()).isTrue();
+
+        // A second run, on this node or on another one, cannot take the lock while the lease is open
+        assertThat(jobLockService.tryAcquire("job")).isEmpty();
+
+        lease.get().close();
+        assertThat(lease.get().isHeld()).isFalse();
+
+        try (JobLease nextLease = jobLockService.tryAcquire("job").orElseThrow()) {
+            assertThat(nextLease.isHeld()).isTrue();
+        }
+    }
+
+    @Test
+    void lockOfAnotherNodeIsTakenOverOnlyOnceExpired() {
+        Instant now = Instant.now();
+        jobLockRepository.save(new JobLock("held", "other-node", now, now.plus(Duration.ofMinutes(5))));
+        jobLockRepository.save(new JobLock("expired", "other-node", now.minus(Duration.ofMinutes(10)), now.minus(Duration.ofMinutes(5))));
+
+        assertThat(jobLockService.tryAcquire("held")).isEmpty();
+        try (JobLease lease = jobLockService.tryAcquire("expired").orElseThrow()) {
+            assertThat(lease.isHeld()).isTrue();
+            assertThat(jobLockRepository.findById("expired").orElseThrow().getLockedBy()).isNotEqualTo("other-node");
+        }
+    }
+
+    @Test
+    void releasedLockStaysTakenForTheMinimumHold() {
+        Object target = AopTestUtils.getUltimateTargetObject(jobLockService);
+        ReflectionTestUtils.setField(target, "minHoldSeconds", 60L);
+        jobLockService.tryAcquire("job").orElseThrow().close();
+
+        // The minimum hold is counted by the database from the time the lock was acquired
+        assertThat(jobLockService.tryAcquire("job")).isEmpty();
+        JobLock lock = jobLockRepository.findById("job").orElseThrow();
+        assertThat(Duration.between(lock.getLockedAt(), lock.getLockedUntil())).isEqualTo(Duration.ofSeconds(60));
+    }
+}
@@ -0,0 +1,276 @@
+package com.yoanesber.spring.task_scheduler.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.yoanesber.spring.task_scheduler.archive.UserArchiver;
+import com.yoanesber.spring.task_scheduler.batch.ChunkProcessor;
+import com.yoanesber.spring.task_scheduler.entity.JobCheckpoint;
+import com.yoanesber.spring.task_scheduler.entity.User;
+import com.yoanesber.spring.task_scheduler.repository.JobCheckpointRepository;
+import com.yoanesber.spring.task_scheduler.repository.JobWatermarkRepository;
+import com.yoanesber.spring.task_scheduler.repository.UserRepository;
+import com.yoanesber.spring.task_scheduler.service.JobWatermarkService;
+import com.yoanesber.spring.task_scheduler.service.LifecycleTransition;
+import com.yoanesber.spring.task_scheduler.service.UserService;
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+@SpringBootTest
+class UserServiceImplTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobWatermarkService jobWatermarkService;
+
+    @Autowired
+    private JobWatermarkRepository jobWatermarkRepository;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private ChunkProcessor chunkProcessor;
+
+    @Autowired
+    private UserArchiver userArchiver;
+
+    @TempDir
+    private Path archiveDirectory;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        jobWatermarkRepository.deleteAll();
+        jobCheckpointRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        setWatermarkEnabled(false);
+        setBulkUpdateEnabled(true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void setAccountExpirationDateUpdatesOnlyInactiveUsers(boolean bulkUpdateEnabled) {
+        setBulkUpdateEnabled(bulkUpdateEnabled);
+        Instant now = Instant.now();
+        for (int i = 0; i < 250; i++) {
+            // Every other user has not logged in for 10 days, the allowed inactivity is 3 days
+            User user = newUser("user" + i, now.minus(Duration.ofDays(i % 2 == 0 ? 10 : 1)));
+            userRepository.save(user);
+        }
+        userRepository.save(newUser("superadmin", now.minus(Duration.ofDays(10))));
+
+        assertThat(userService.setAccountExpirationDate()).isEqualTo(125);
+        assertThat(userRepository.findAll())
+            .filteredOn(user -> user.getAccountExpirationDate() != null)
+            .hasSize(125)
+            .allMatch(user -> !user.getUserName().equals("superadmin"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void setAccountsToExpiredExpiresOnlyPastExpirationDates(boolean bulkUpdateEnabled) {
+        setBulkUpdateEnabled(bulkUpdateEnabled);
+        Instant now = Instant.now();
+        for (int i = 0; i < 250; i++) {
+            User user = newUser("user" + i, now);
+            user.setAccountExpirationDate(now.plus(Duration.ofDays(i % 5 == 0 ? -1 : 1)));
+            userRepository.save(user);
+        }
+
+        assertThat(userService.setAccountsToExpired()).isEqualTo(50);
+        assertThat(userRepository.findAll()).filteredOn(user -> !user.isAccountNonExpired()).hasSize(50);
+
+        // A second run has nothing left to expire
+        assertThat(userService.setAccountsToExpired()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void setAccountsToExpiredOnlyScansTheDeltaSinceTheWatermark(boolean bulkUpdateEnabled) {
+        setBulkUpdateEnabled(bulkUpdateEnabled);
+        setWatermarkEnabled(true);
+        Instant now = Instant.now();
+        userRepository.save(newUserExpiringAt("user0", now.minus(Duration.ofDays(1))));
+
+        // No watermark yet: full scan
+        assertThat(userService.setAccountsToExpired()).isEqualTo(1);
+        assertThat(jobWatermarkRepository.findById("setAccountsToExpired")).isPresent();
+
+        // An expiration date that has just passed is in the delta window, a back-dated one is behind the watermark
+        userRepository.save(newUserExpiringAt("user1", Instant.now().minus(Duration.ofMinutes(1))));
+        userRepository.save(newUserExpiringAt("user2", now.minus(Duration.ofDays(10))));
+        assertThat(userService.setAccountsToExpired()).isEqualTo(1);
+
+        // A watermark in the future is corrupt: full scan
+        jobWatermarkService.advance("setAccountsToExpired", Instant.now().plus(Duration.ofDays(1)));
+        assertThat(userService.setAccountsToExpired()).isEqualTo(1);
+        assertThat(userRepository.findAll()).noneMatch(User::isAccountNonExpired);
+    }
+
+    @Test
+    void cleanUpResumesTheUnfinishedRunFromItsCheckpoint() {
+        Instant expired = Instant.now().minus(Duration.ofDays(60));
+        for (int i = 0; i < 400; i++) {
+            User user = newUserExpiringAt("user" + i, expired);
+            user.setAccountNonExpired(false);
+            userRepository.save(user);
+        }
+
+        // A previous attempt, started an hour ago, committed the first chunk of the id space before it was killed
+        long chunkSize = 100;
+        long firstChunk = Math.floorDiv(userRepository.findMinId() - 1, chunkSize);
+        int partitionCount = chunkProcessor.getPartitionCount();
+        int partition = (int) Math.floorMod(firstChunk, partitionCount);
+        long committedUpToId = (firstChunk + 1) * chunkSize;
+        Instant runTime = Instant.now().minus(Duration.ofHours(1));
+        jobCheckpointRepository.save(new JobCheckpoint("cleanUpExpiredAccounts#partition-" + partition, "cleanUpExpiredAccounts",
+            partition, partitionCount, runTime, committedUpToId, 42, false, runTime));
+
+        long skippedUsers = userRepository.findAll().stream().filter(user -> user.getId() <= committedUpToId).count();
+        assertThat(userService.cleanUpExpiredAccounts()).isEqualTo(400 - skippedUsers);
+
+        // The chunk of the previous attempt is not updated again and the checkpoints of the completed run are deleted
+        assertThat(userRepository.findAll()).allMatch(user -> user.isDeleted() == (user.getId() > committedUpToId));
+        assertThat(jobCheckpointRepository.findAll()).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void cleanUpsLeaveTheDeletedUsersToThePurge(boolean bulkUpdateEnabled) {
+        setBulkUpdateEnabled(bulkUpdateEnabled);
+        ReflectionTestUtils.setField(userArchiver, "directory", archiveDirectory.toString());
+        Instant expired = Instant.now().minus(Duration.ofDays(40));
+        for (int i = 0; i < 150; i++) {
+            // Both the account and the credentials have expired past their retention
+            User user = newUserExpiringAt("user" + i, expired);
+            user.setAccountNonExpired(false);
+            user.setCredentialsNonExpired(false);
+            user.setCredentialsExpirationDate(expired);
+            userRepository.save(user);
+        }
+
+        // The credentials cleanup does not delete the users deleted by the accounts cleanup again
+        assertThat(userService.cleanUpExpiredAccounts()).isEqualTo(150);
+        assertThat(userService.cleanUpExpiredCredentials()).isZero();
+
+        // Past the retention of the deleted users, the next cleanups leave their deletion date untouched
+        jdbcTemplate.update("""
+            update users set
+                updated_date = updated_date - interval '31' day,
+                account_expiration_date = account_expiration_date - interval '31' day,
+                credentials_expiration_date = credentials_expiration_date - interval '31' day
+            """);
+        assertThat(userService.cleanUpExpiredAccounts()).isZero();
+        assertThat(userService.cleanUpExpiredCredentials()).isZero();
+
+        assertThat(userService.purgeDeletedUsers()).isEqualTo(150);
+        assertThat(userRepository.count()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 250})
+    void sendEmailToUsersWithExpiredAccountsFindsEveryExpiredUser(int expiredUsers) {
+        for (int i = 0; i < expiredUsers + 50; i++) {
+            User user = newUser("user" + i, Instant.now());
+            user.setAccountNonExpired(i >= expiredUsers);
+            userRepository.save(user);
+        }
+
+        assertThat(userService.sendEmailToUsersWithExpiredAccounts()).isEqualTo(expiredUsers);
+        assertThat(userRepository.findExpiredAccount(0, expiredUsers + 50))
+            .hasSize(expiredUsers)
+            .allMatch(user -> user.getEmail().equals(user.getUserName() + "@youremail.com"));
+    }
+
+    @Test
+    void lifecyclePassLeavesTheSameStateAsTheJobs() {
+        SyntheticUsers.reseed(jdbcTemplate, 1000);
+        int jobsUpdatedUsers = userService.setAccountExpirationDate() + userService.setAccountsToExpired()
+            + userService.setCredentialsToExpired() + userService.cleanUpExpiredAccounts() + userService.cleanUpExpiredCredentials();
+        Map<String, String> jobsState = lifecycleStateByUserName();
+
+        SyntheticUsers.reseed(jdbcTemplate, 1000);
+        int passUpdatedUsers = userService.runLifecyclePass(EnumSet.of(
+            LifecycleTransition.SET_ACCOUNT_EXPIRATION_DATE, LifecycleTransition.SET_ACCOUNTS_TO_EXPIRED,
+            LifecycleTransition.SET_CREDENTIALS_TO_EXPIRED, LifecycleTransition.CLEAN_UP_EXPIRED_ACCOUNTS,
+            LifecycleTransition.CLEAN_UP_EXPIRED_CREDENTIALS));
+
+        assertThat(jobsUpdatedUsers).isPositive();
+        assertThat(lifecycleStateByUserName()).isEqualTo(jobsState);
+        assertThat(passUpdatedUsers).isEqualTo(jobsUpdatedUsers);
+    }
+
+    private Map<String, String> lifecycleStateByUserName() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("""
+            select username, is_account_non_expired, is_credentials_non_expired, is_deleted, account_expiration_date is not null as has_expiration_date
+            from users
+            """);
+        return rows.stream().collect(Collectors.toMap(
+            row -> (String) row.get("username"),
+            row -> row.get("is_account_non_expired") + "/" + row.get("is_credentials_non_expired") + "/" + row.get("is_deleted")
+                + "/" + row.get("has_expiration_date")));
+    }
+
+    private void setBulkUpdateEnabled(boolean bulkUpdateEnabled) {
+        Object target = AopTestUtils.getUltimateTargetObject(userService);
+        ReflectionTestUtils.setField(target, "bulkUpdateEnabled", bulkUpdateEnabled);
+    }
+
+    private void setWatermarkEnabled(boolean watermarkEnabled) {
+        Object target = AopTestUtils.getUltimateTargetObject(jobWatermarkService);
+        ReflectionTestUtils.setField(target, "watermarkEnabled", watermarkEnabled);
+    }
+
+    private static User newUserExpiringAt(String userName, Instant accountExpirationDate) {
+        User user = newUser(userName, Instant.now());
+        user.setAccountExpirationDate(accountExpirationDate);
+        return user;
+    }
+
+    private static User newUser(String userName, Instant lastLogin) {
+        User user = new User();
+        user.setUserName(userName);
+        user.setPassword("password");
+        user.setEmail(userName + "@youremail.com");
+        user.setFirstName(userName);
+        user.setEnabled(true);
+        user.setAccountNonExpired(true);
+        user.setAccountNonLocked(true);
+        user.setCredentialsNonExpired(true);
+        user.setLastLogin(lastLogin);
+        user.setUserType("USER_ACCOUNT");
+        user.setCreatedBy("system");
+        user.setUpdatedBy("system");
+        return user;
+    }
+}
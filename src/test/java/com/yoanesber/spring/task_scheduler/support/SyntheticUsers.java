@@ -0,0 +1,85 @@
+package com.yoanesber.spring.task_scheduler.support;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Generates synthetic users for benchmarks and tests, with a fixed random seed so every run sees the same data set:
+// - 10% of the users never logged in, the others logged in 0-60 days ago
+// - 10% of the accounts and credentials have already expired 1-60 days ago, the others expire between 60 days ago and a year from now
+public final class SyntheticUsers {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_USER = """
+    insert into users (username, password, email, firstname, lastname, is_enabled, is_account_non_expired, is_account_non_locked,
+        is_credentials_non_expired, is_deleted, account_expiration_date, credentials_expiration_date, last_login, user_type,
+        created_by, created_date, updated_by, updated_date)
+    values (?, ?, ?, ?, ?, true, ?, true, ?, false, ?, ?, ?, 'USER_ACCOUNT', 'system', ?, 'system', ?)
+    """;
+
+    private SyntheticUsers() {
+    }
+
+    // Delete all users and insert userCount synthetic users
+    public static void reseed(JdbcTemplate jdbcTemplate, int userCount) {
+        jdbcTemplate.update("delete from users");
+        insert(jdbcTemplate, userCount, Instant.now());
+    }
+
+    // Insert userCount synthetic users relative to the given current time
+    public static void insert(JdbcTemplate jdbcTemplate, int userCount, Instant now) {
+        insert(jdbcTemplate, 0, userCount, now);
+    }
+
+    // Insert userCount synthetic users named from user<firstUser> on, so users can be added to an existing data set
+    public static void insert(JdbcTemplate jdbcTemplate, int firstUser, int userCount, Instant now) {
+        Random random = new Random(42L + firstUser);
+        Timestamp createdDate = Timestamp.from(now.minus(Duration.ofDays(400)));
+
+        for (int first = firstUser; first < firstUser + userCount; first += BATCH_SIZE) {
+            final int batchFirst = first;
+            final int batchSize = Math.min(BATCH_SIZE, firstUser + userCount - first);
+
+            jdbcTemplate.batchUpdate(INSERT_USER, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    String userName = "user" + (batchFirst + i);
+                    boolean accountExpired = random.nextInt(10) == 0;
+                    boolean credentialsExpired = random.nextInt(10) == 0;
+
+                    ps.setString(1, userName);
+                    ps.setString(2, "$2a$10$eP5Sddi7Q5Jv6seppeF93.XsWGY8r4PnsqprWGb5AxsZ9TpwULIGa");
+                    ps.setString(3, userName + "@youremail.com");
+                    ps.setString(4, "User");
+                    ps.setString(5, String.valueOf(batchFirst + i));
+                    ps.setBoolean(6, !accountExpired);
+                    ps.setBoolean(7, !credentialsExpired);
+                    ps.setTimestamp(8, expirationDate(random, now, accountExpired));
+                    ps.setTimestamp(9, expirationDate(random, now, credentialsExpired));
+                    ps.setTimestamp(10, random.nextInt(10) == 0 ? null : Timestamp.from(now.minus(Duration.ofMinutes(random.nextInt(60 * 24 * 60)))));
+                    ps.setTimestamp(11, createdDate);
+                    ps.setTimestamp(12, createdDate);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batchSize;
+                }
+            });
+        }
+    }
+
+    private static Timestamp expirationDate(Random random, Instant now, boolean expired) {
+        int minutes = expired
+            ? -1 - random.nextInt(60 * 24 * 60)
+            : random.nextInt(60 * 24 * 425) - 60 * 24 * 60;
+        return Timestamp.from(now.plus(Duration.ofMinutes(minutes)));
+    }
+}
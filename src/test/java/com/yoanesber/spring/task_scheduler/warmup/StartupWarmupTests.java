@@ -0,0 +1,35 @@
+package com.yoanesber.spring.task_scheduler.warmup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.yoanesber.spring.task_scheduler.support.SyntheticUsers;
+
+@SpringBootTest
+class StartupWarmupTests {
+
+    @Autowired
+    private StartupWarmup startupWarmup;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void warmupRunsTheQueriesWithoutChangingAnyUser() throws Exception {
+        SyntheticUsers.reseed(jdbcTemplate, 100);
+        String checksum = "select sum(id), count(account_expiration_date), count(*) filter (where is_deleted) from users";
+        List<Map<String, Object>> before = jdbcTemplate.queryForList(checksum);
+
+        assertThat(startupWarmup.primeConnectionPool()).isPositive();
+        // Only the read-only queries are run, the @Modifying methods are skipped
+        assertThat(startupWarmup.prepareQueries()).isGreaterThan(10);
+        assertThat(jdbcTemplate.queryForList(checksum)).isEqualTo(before);
+    }
+}